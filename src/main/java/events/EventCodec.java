@@ -0,0 +1,97 @@
+package events;
+
+import java.nio.ByteBuffer;
+
+public class EventCodec {
+    public static final int RECORD_SIZE = Byte.BYTES + Integer.BYTES + 2 * Long.BYTES;
+
+    public static final byte SET_UP = 1;
+    public static final byte EXTENDED = 2;
+    public static final byte ENTERED = 3;
+    public static final byte LEFT = 4;
+    public static final byte VISITS_COMPACTED = 5;
+
+    public static byte typeOf(Event event) {
+        if (event instanceof MembershipSetUp) {
+            return SET_UP;
+        } else if (event instanceof MembershipExtended) {
+            return EXTENDED;
+        } else if (event instanceof MemberEntered) {
+            return ENTERED;
+        } else if (event instanceof MemberLeft) {
+            return LEFT;
+        } else if (event instanceof VisitsCompacted) {
+            return VISITS_COMPACTED;
+        }
+
+        throw new IllegalArgumentException("Unknown event type " + event.getClass().getName());
+    }
+
+    public static long firstOf(Event event) {
+        if (event instanceof MembershipSetUp) {
+            return ((MembershipSetUp) event).getRegisterTime();
+        } else if (event instanceof MembershipExtended) {
+            return ((MembershipExtended) event).getDurationMillis();
+        } else if (event instanceof MemberEntered) {
+            return ((MemberEntered) event).getEnterTime();
+        } else if (event instanceof MemberLeft) {
+            return ((MemberLeft) event).getExitTime();
+        } else if (event instanceof VisitsCompacted) {
+            return ((VisitsCompacted) event).getAttendanceCount();
+        }
+
+        throw new IllegalArgumentException("Unknown event type " + event.getClass().getName());
+    }
+
+    public static long secondOf(Event event) {
+        if (event instanceof MembershipSetUp) {
+            return ((MembershipSetUp) event).getExpireTime();
+        } else if (event instanceof VisitsCompacted) {
+            return ((VisitsCompacted) event).getCompactedBefore();
+        }
+
+        return 0;
+    }
+
+    public static Event create(byte type, int membershipId, long first, long second) {
+        switch (type) {
+            case SET_UP:
+                return new MembershipSetUp(membershipId, first, second);
+            case EXTENDED:
+                return new MembershipExtended(membershipId, first);
+            case ENTERED:
+                return new MemberEntered(membershipId, first);
+            case LEFT:
+                return new MemberLeft(membershipId, first);
+            case VISITS_COMPACTED:
+                return new VisitsCompacted(membershipId, first, second);
+            default:
+                throw new IllegalArgumentException("Unknown event type tag " + type);
+        }
+    }
+
+    public static void encode(Event event, ByteBuffer buffer) {
+        buffer.put(typeOf(event));
+        buffer.putInt(event.getMembershipId());
+        buffer.putLong(firstOf(event));
+        buffer.putLong(secondOf(event));
+    }
+
+    public static void encode(Event event, ByteBuffer buffer, int offset) {
+        buffer.put(offset, typeOf(event));
+        buffer.putInt(offset + Byte.BYTES, event.getMembershipId());
+        buffer.putLong(offset + Byte.BYTES + Integer.BYTES, firstOf(event));
+        buffer.putLong(offset + Byte.BYTES + Integer.BYTES + Long.BYTES, secondOf(event));
+    }
+
+    public static Event decode(ByteBuffer buffer) {
+        return create(buffer.get(), buffer.getInt(), buffer.getLong(), buffer.getLong());
+    }
+
+    public static Event decode(ByteBuffer buffer, int offset) {
+        return create(buffer.get(offset),
+                buffer.getInt(offset + Byte.BYTES),
+                buffer.getLong(offset + Byte.BYTES + Integer.BYTES),
+                buffer.getLong(offset + Byte.BYTES + Integer.BYTES + Long.BYTES));
+    }
+}
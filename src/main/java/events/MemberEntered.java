@@ -4,11 +4,15 @@ import java.util.Date;
 
 public class MemberEntered implements Event {
     private final int membershipId;
-    private final Date enterDate;
+    private final long enterTime;
 
     public MemberEntered(int membershipId, Date enterDate) {
+        this(membershipId, enterDate.getTime());
+    }
+
+    public MemberEntered(int membershipId, long enterTime) {
         this.membershipId = membershipId;
-        this.enterDate = enterDate;
+        this.enterTime = enterTime;
     }
 
     @Override
@@ -16,7 +20,11 @@ public class MemberEntered implements Event {
         return membershipId;
     }
 
+    public long getEnterTime() {
+        return enterTime;
+    }
+
     public Date getEnterDate() {
-        return enterDate;
+        return new Date(enterTime);
     }
 }
@@ -4,11 +4,15 @@ import java.util.Date;
 
 public class MemberLeft implements Event {
     private final int membershipId;
-    private final Date exitDate;
+    private final long exitTime;
 
     public MemberLeft(int membershipId, Date exitDate) {
+        this(membershipId, exitDate.getTime());
+    }
+
+    public MemberLeft(int membershipId, long exitTime) {
         this.membershipId = membershipId;
-        this.exitDate = exitDate;
+        this.exitTime = exitTime;
     }
 
     @Override
@@ -16,7 +20,11 @@ public class MemberLeft implements Event {
         return membershipId;
     }
 
+    public long getExitTime() {
+        return exitTime;
+    }
+
     public Date getExitDate() {
-        return exitDate;
+        return new Date(exitTime);
     }
 }
@@ -4,11 +4,15 @@ import java.time.Duration;
 
 public class MembershipExtended implements Event {
     private final int membershipId;
-    private final Duration duration;
+    private final long durationMillis;
 
     public MembershipExtended(int membershipId, Duration duration) {
+        this(membershipId, duration.toMillis());
+    }
+
+    public MembershipExtended(int membershipId, long durationMillis) {
         this.membershipId = membershipId;
-        this.duration = duration;
+        this.durationMillis = durationMillis;
     }
 
     @Override
@@ -16,7 +20,11 @@ public class MembershipExtended implements Event {
         return membershipId;
     }
 
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
     public Duration getDuration() {
-        return duration;
+        return Duration.ofMillis(durationMillis);
     }
 }
@@ -4,12 +4,16 @@ import java.util.Date;
 
 public class MembershipSetUp implements Event {
     private final int membershipId;
-    private final Date registerDate, expireDate;
+    private final long registerTime, expireTime;
 
     public MembershipSetUp(int membershipId, Date registerDate, Date expireDate) {
+        this(membershipId, registerDate.getTime(), expireDate.getTime());
+    }
+
+    public MembershipSetUp(int membershipId, long registerTime, long expireTime) {
         this.membershipId = membershipId;
-        this.registerDate = registerDate;
-        this.expireDate = expireDate;
+        this.registerTime = registerTime;
+        this.expireTime = expireTime;
     }
 
     @Override
@@ -17,11 +21,19 @@ public class MembershipSetUp implements Event {
         return membershipId;
     }
 
+    public long getRegisterTime() {
+        return registerTime;
+    }
+
+    public long getExpireTime() {
+        return expireTime;
+    }
+
     public Date getRegisterDate() {
-        return registerDate;
+        return new Date(registerTime);
     }
 
     public Date getExpireDate() {
-        return expireDate;
+        return new Date(expireTime);
     }
 }
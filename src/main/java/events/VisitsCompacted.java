@@ -0,0 +1,36 @@
+package events;
+
+import java.util.Date;
+
+public class VisitsCompacted implements Event {
+    private final int membershipId;
+    private final long attendanceCount;
+    private final long compactedBefore;
+
+    public VisitsCompacted(int membershipId, long attendanceCount, Date compactedBefore) {
+        this(membershipId, attendanceCount, compactedBefore.getTime());
+    }
+
+    public VisitsCompacted(int membershipId, long attendanceCount, long compactedBefore) {
+        this.membershipId = membershipId;
+        this.attendanceCount = attendanceCount;
+        this.compactedBefore = compactedBefore;
+    }
+
+    @Override
+    public int getMembershipId() {
+        return membershipId;
+    }
+
+    public long getAttendanceCount() {
+        return attendanceCount;
+    }
+
+    public long getCompactedBefore() {
+        return compactedBefore;
+    }
+
+    public Date getCompactedBeforeDate() {
+        return new Date(compactedBefore);
+    }
+}
@@ -0,0 +1,156 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import services.EnterService;
+import services.ManagerService;
+import services.StatService;
+import storage.EventStorage;
+import storage.EventStore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class CheckInServer implements Closeable {
+    private final HttpServer server;
+    private final ExecutorService executor = requestExecutor();
+    private final EventStore storage;
+    private final ManagerService managerService;
+    private final EnterService enterService;
+    private final StatService statService;
+
+    public CheckInServer(EventStore storage, InetSocketAddress address) throws IOException {
+        this.storage = storage;
+        this.managerService = new ManagerService(storage);
+        this.enterService = new EnterService(storage);
+        this.statService = new StatService(storage);
+        this.server = HttpServer.create(address, 0);
+
+        server.createContext("/memberships", handler("POST", (query) -> String.valueOf(managerService.registerMembership(
+                new Date(longParam(query, "register")), new Date(longParam(query, "expire"))))));
+        server.createContext("/membership", handler("GET", (query) -> {
+            var info = managerService.getMembershipInfo(intParam(query, "id"));
+            return info.getRegisterTime() + " " + info.getExpireTime() + " " + info.getAttendanceCount() + " " + info.isEntered();
+        }));
+        server.createContext("/enter", handler("POST", (query) -> String.valueOf(
+                enterService.enter(intParam(query, "id"), new Date(longParam(query, "time"))))));
+        server.createContext("/exit", handler("POST", (query) -> String.valueOf(
+                enterService.exit(intParam(query, "id"), new Date(longParam(query, "time"))))));
+        server.createContext("/occupancy", handler("GET", (query) -> statService.getOccupancy() + " " + statService.getPeakOccupancy()));
+        server.createContext("/metrics", handler("GET", (query) -> {
+            var snapshot = storage.getMetrics().snapshot();
+            var body = new StringBuilder();
+            snapshot.getCounters().forEach((name, value) -> body.append(name).append(' ').append(value).append('\n'));
+            snapshot.getRecorders().forEach((name, value) -> body.append(name).append(' ').append(value).append('\n'));
+            return body.toString();
+        }));
+        server.setExecutor(executor);
+    }
+
+    public static void main(String[] args) throws IOException {
+        var port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        var server = new CheckInServer(new EventStorage(), new InetSocketAddress(port));
+        server.start();
+        System.out.println("Listening on port " + server.getPort());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public EventStore getStorage() {
+        return storage;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    static ExecutorService requestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private interface Action {
+        String apply(Map<String, String> query);
+    }
+
+    private static HttpHandler handler(String method, Action action) {
+        return (exchange) -> {
+            try (exchange) {
+                if (!exchange.getRequestMethod().equals(method)) {
+                    respond(exchange, 405, "Method not allowed");
+                    return;
+                }
+
+                String body;
+
+                try {
+                    body = action.apply(parseQuery(exchange.getRequestURI().getRawQuery()));
+                } catch (IllegalArgumentException e) {
+                    respond(exchange, 400, String.valueOf(e.getMessage()));
+                    return;
+                } catch (RuntimeException e) {
+                    respond(exchange, 500, String.valueOf(e.getMessage()));
+                    return;
+                }
+
+                respond(exchange, 200, body);
+            }
+        };
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        var bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+
+        if (query != null) {
+            for (var pair : query.split("&")) {
+                var separator = pair.indexOf('=');
+
+                if (separator > 0) {
+                    params.put(pair.substring(0, separator), pair.substring(separator + 1));
+                }
+            }
+        }
+
+        return params;
+    }
+
+    private static long longParam(Map<String, String> query, String name) {
+        var value = query.get(name);
+
+        if (value == null) {
+            throw new IllegalArgumentException("Missing parameter " + name);
+        }
+
+        return Long.parseLong(value);
+    }
+
+    private static int intParam(Map<String, String> query, String name) {
+        return Math.toIntExact(longParam(query, name));
+    }
+}
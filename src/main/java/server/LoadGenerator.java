@@ -0,0 +1,131 @@
+package server;
+
+import utils.ValueRecorder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LoadGenerator {
+    public static class Result {
+        private final long requests;
+        private final long failures;
+        private final Duration elapsed;
+        private final ValueRecorder.Snapshot latencyNanos;
+
+        public Result(long requests, long failures, Duration elapsed, ValueRecorder.Snapshot latencyNanos) {
+            this.requests = requests;
+            this.failures = failures;
+            this.elapsed = elapsed;
+            this.latencyNanos = latencyNanos;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public double throughput() {
+            return requests * 1e9 / Math.max(1, elapsed.toNanos());
+        }
+
+        public ValueRecorder.Snapshot getLatencyNanos() {
+            return latencyNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("requests=%d failures=%d throughput=%.0f/s latency p50=%dus p99=%dus p99.9=%dus max=%dus",
+                    requests, failures, throughput(), latencyNanos.getP50() / 1000, latencyNanos.getP99() / 1000,
+                    latencyNanos.getP999() / 1000, latencyNanos.getMax() / 1000);
+        }
+    }
+
+    private final URI base;
+    private final HttpClient client;
+    private final ValueRecorder latency = new ValueRecorder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public LoadGenerator(URI base) {
+        this.base = base;
+        this.client = HttpClient.newBuilder().executor(CheckInServer.requestExecutor()).build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        var base = URI.create(args.length > 0 ? args[0] : "http://localhost:8080");
+        var turnstiles = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        var duration = Duration.ofSeconds(args.length > 2 ? Long.parseLong(args[2]) : 10);
+
+        System.out.println(new LoadGenerator(base).run(turnstiles, duration));
+    }
+
+    public Result run(int turnstiles, Duration duration) throws InterruptedException, IOException {
+        var now = System.currentTimeMillis();
+        var members = new int[turnstiles];
+
+        for (int i = 0; i < turnstiles; i++) {
+            members[i] = Integer.parseInt(send("POST", "/memberships?register=" + now + "&expire=" + Long.MAX_VALUE));
+        }
+
+        var executor = CheckInServer.requestExecutor();
+        var start = System.nanoTime();
+        var deadline = start + duration.toNanos();
+        List<Future<?>> running = new ArrayList<>(turnstiles);
+
+        for (var member : members) {
+            running.add(executor.submit(() -> swipe(member, deadline)));
+        }
+
+        for (var turnstile : running) {
+            try {
+                turnstile.get();
+            } catch (ExecutionException e) {
+                failures.increment();
+            }
+        }
+
+        executor.shutdown();
+        return new Result(requests.sum(), failures.sum(), Duration.ofNanos(System.nanoTime() - start), latency.snapshot());
+    }
+
+    private void swipe(int member, long deadline) {
+        for (var entering = true; System.nanoTime() < deadline; entering = !entering) {
+            var path = (entering ? "/enter" : "/exit") + "?id=" + member + "&time=" + System.currentTimeMillis();
+            var start = System.nanoTime();
+
+            try {
+                send("POST", path);
+                latency.recordSince(start);
+                requests.increment();
+            } catch (IOException e) {
+                failures.increment();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private String send(String method, String path) throws IOException, InterruptedException {
+        var request = HttpRequest.newBuilder(base.resolve(path)).method(method, HttpRequest.BodyPublishers.noBody()).build();
+        var response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        if (response.statusCode() != 200) {
+            throw new IOException("HTTP " + response.statusCode() + ": " + response.body());
+        }
+
+        return response.body();
+    }
+}
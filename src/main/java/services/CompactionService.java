@@ -0,0 +1,36 @@
+package services;
+
+import storage.EventStorage;
+import storage.EventStore;
+
+import java.time.Duration;
+import java.util.Date;
+
+public class CompactionService extends EventHandlingService {
+    private final Duration horizon;
+
+    public CompactionService(EventStore storage, Duration horizon) {
+        super(storage);
+
+        if (storage.getConcurrencyMode() == EventStorage.ConcurrencyMode.OPTIMISTIC) {
+            throw new IllegalArgumentException("Optimistic histories are append-only");
+        }
+
+        this.horizon = horizon;
+    }
+
+    public long compactAll(Date now) {
+        var before = now.getTime() - horizon.toMillis();
+        long removed = 0;
+
+        for (int membershipId = 0; membershipId < storage.getSize(); membershipId++) {
+            removed += compact(membershipId, before);
+        }
+
+        return removed;
+    }
+
+    public int compact(int membershipId, long before) {
+        return storage.compactHistory(membershipId, before);
+    }
+}
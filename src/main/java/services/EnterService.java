@@ -1,43 +1,98 @@
 package services;
 
+import events.Event;
 import events.MemberEntered;
 import events.MemberLeft;
-import storage.EventStorage;
+import storage.EventStore;
 
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 public class EnterService extends EventHandlingService {
-    public EnterService(EventStorage storage) {
+    public static class Swipe {
+        private final int membershipId;
+        private final Date date;
+
+        public Swipe(int membershipId, Date date) {
+            this.membershipId = membershipId;
+            this.date = date;
+        }
+
+        public int getMembershipId() {
+            return membershipId;
+        }
+
+        public Date getDate() {
+            return date;
+        }
+    }
+
+    private final LongAdder enterAccepted, enterRejected, exitAccepted, exitRejected;
+
+    public EnterService(EventStore storage) {
         super(storage);
+
+        var metrics = storage.getMetrics();
+        this.enterAccepted = metrics.counter("enter.accepted");
+        this.enterRejected = metrics.counter("enter.rejected");
+        this.exitAccepted = metrics.counter("exit.accepted");
+        this.exitRejected = metrics.counter("exit.rejected");
     }
 
     public boolean enter(int membershipId, Date enterDate) {
-        return storage.transactionOn(membershipId, (history) -> {
-           MembershipInfo info = new MembershipInfo(membershipId, history);
+        var accepted = storage.appendIf(membershipId, MembershipInfo.PROJECTION, (info) -> decideEnter(info, enterDate));
 
-           if (!info.isEntered() && enterDate.before(info.getExpireDate())) {
-               var event = new MemberEntered(membershipId, enterDate);
-               history.add(event);
-               storage.applyEvent(event);
-               return true;
-           }
-
-           return false;
-        });
+        return count(accepted, enterAccepted, enterRejected);
     }
 
     public boolean exit(int membershipId, Date exitDate) {
-        return storage.transactionOn(membershipId, (history) -> {
-            MembershipInfo info = new MembershipInfo(membershipId, history);
-
-            if (info.isEntered()) {
-                var event = new MemberLeft(membershipId, exitDate);
-                history.add(event);
-                storage.applyEvent(event);
-                return true;
-            }
-
-            return false;
-        });
+        var accepted = storage.appendIf(membershipId, MembershipInfo.PROJECTION, (info) -> decideExit(info, exitDate));
+
+        return count(accepted, exitAccepted, exitRejected);
+    }
+
+    public boolean[] enterAll(List<Swipe> swipes) {
+        var accepted = storage.appendEach(swipes, Swipe::getMembershipId, MembershipInfo.PROJECTION,
+                (info, swipe) -> decideEnter(info, swipe.getDate()));
+
+        for (var result : accepted) {
+            count(result, enterAccepted, enterRejected);
+        }
+
+        return accepted;
+    }
+
+    public boolean[] exitAll(List<Swipe> swipes) {
+        var accepted = storage.appendEach(swipes, Swipe::getMembershipId, MembershipInfo.PROJECTION,
+                (info, swipe) -> decideExit(info, swipe.getDate()));
+
+        for (var result : accepted) {
+            count(result, exitAccepted, exitRejected);
+        }
+
+        return accepted;
+    }
+
+    private static boolean count(boolean accepted, LongAdder acceptedCounter, LongAdder rejectedCounter) {
+        (accepted ? acceptedCounter : rejectedCounter).increment();
+
+        return accepted;
+    }
+
+    private static Event decideEnter(MembershipInfo info, Date enterDate) {
+        if (!info.isEntered() && enterDate.getTime() < info.getExpireTime()) {
+            return new MemberEntered(info.getMembershipId(), enterDate);
+        }
+
+        return null;
+    }
+
+    private static Event decideExit(MembershipInfo info, Date exitDate) {
+        if (info.isEntered()) {
+            return new MemberLeft(info.getMembershipId(), exitDate);
+        }
+
+        return null;
     }
 }
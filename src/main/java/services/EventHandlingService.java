@@ -1,11 +1,11 @@
 package services;
 
-import storage.EventStorage;
+import storage.EventStore;
 
 public abstract class EventHandlingService {
-    protected final EventStorage storage;
+    protected final EventStore storage;
 
-    public EventHandlingService(EventStorage storage) {
+    public EventHandlingService(EventStore storage) {
         this.storage = storage;
     }
 }
@@ -0,0 +1,89 @@
+package services;
+
+import events.Event;
+import events.MembershipExtended;
+import events.MembershipSetUp;
+import storage.EventStore;
+import storage.StatSubscriber;
+import utils.IntLongDynamicArray;
+
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+
+public class ExpiryIndex extends EventHandlingService implements StatSubscriber {
+    private static class Entry {
+        final long expireTime;
+        final int membershipId;
+
+        Entry(long expireTime, int membershipId) {
+            this.expireTime = expireTime;
+            this.membershipId = membershipId;
+        }
+    }
+
+    private static final Comparator<Entry> ORDER = Comparator.<Entry>comparingLong((entry) -> entry.expireTime)
+            .thenComparingInt((entry) -> entry.membershipId);
+
+    private final NavigableSet<Entry> byExpiry = new ConcurrentSkipListSet<>(ORDER);
+    private final IntLongDynamicArray expireTimes = new IntLongDynamicArray();
+
+    public ExpiryIndex(EventStore storage) {
+        super(storage);
+        storage.subscribe(this);
+    }
+
+    @Override
+    public void process(Event event) {
+        var membershipId = event.getMembershipId();
+        var current = expireTimes.get(membershipId);
+        long updated;
+
+        if (event instanceof MembershipSetUp) {
+            if (current != IntLongDynamicArray.EMPTY && current != 0) {
+                return;
+            }
+            updated = ((MembershipSetUp) event).getExpireTime();
+        } else if (event instanceof MembershipExtended) {
+            updated = (current == IntLongDynamicArray.EMPTY ? 0 : current) + ((MembershipExtended) event).getDurationMillis();
+        } else {
+            return;
+        }
+
+        byExpiry.add(new Entry(updated, membershipId));
+        expireTimes.put(membershipId, updated);
+
+        if (current != IntLongDynamicArray.EMPTY && current != updated) {
+            byExpiry.remove(new Entry(current, membershipId));
+        }
+    }
+
+    public Date getExpireDate(int membershipId) {
+        var expireTime = expireTimes.get(membershipId);
+
+        return expireTime == IntLongDynamicArray.EMPTY ? null : new Date(expireTime);
+    }
+
+    public List<Integer> expiringBetween(Date from, Date to) {
+        return ids(byExpiry.subSet(lowerBound(from.getTime()), true, lowerBound(to.getTime()), false), Long.MAX_VALUE);
+    }
+
+    public int countExpiringBetween(Date from, Date to) {
+        return byExpiry.subSet(lowerBound(from.getTime()), true, lowerBound(to.getTime()), false).size();
+    }
+
+    public List<Integer> soonestExpiring(Date after, int limit) {
+        return ids(byExpiry.tailSet(lowerBound(after.getTime()), true), limit);
+    }
+
+    private static Entry lowerBound(long expireTime) {
+        return new Entry(expireTime, Integer.MIN_VALUE);
+    }
+
+    private static List<Integer> ids(NavigableSet<Entry> entries, long limit) {
+        return entries.stream().limit(limit).map((entry) -> entry.membershipId).collect(Collectors.toList());
+    }
+}
@@ -2,14 +2,21 @@ package services;
 
 import events.MembershipExtended;
 import events.MembershipSetUp;
-import storage.EventStorage;
+import storage.EventStore;
 
 import java.time.Duration;
 import java.util.Date;
 
 public class ManagerService extends EventHandlingService {
-    public ManagerService(EventStorage storage) {
+    private final MembershipCache cache;
+
+    public ManagerService(EventStore storage) {
+        this(storage, MembershipCache.DEFAULT_CAPACITY);
+    }
+
+    public ManagerService(EventStore storage, int cacheCapacity) {
         super(storage);
+        this.cache = MembershipCache.of(storage, cacheCapacity);
     }
 
     public int registerMembership(Date registerDate, Date expireDate) {
@@ -19,11 +26,15 @@ public class ManagerService extends EventHandlingService {
         return membershipId;
     }
 
+    public int registerMemberships(int count, Date registerDate, Date expireDate) {
+        return storage.registerEventLists(count, (membershipId) -> new MembershipSetUp(membershipId, registerDate, expireDate));
+    }
+
     public void extendMembership(int membershipId, Duration duration) {
         storage.saveEvent(new MembershipExtended(membershipId, duration));
     }
 
     public MembershipInfo getMembershipInfo(int membershipId) {
-        return storage.transactionOn(membershipId, (history) -> new MembershipInfo(membershipId, history));
+        return cache.get(membershipId);
     }
 }
@@ -0,0 +1,132 @@
+package services;
+
+import storage.EventStore;
+import utils.IntLongDynamicArray;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+public class MembershipCache {
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+
+    private static final int SEGMENTS = 16;
+
+    private static class Entry {
+        final MembershipInfo info;
+        final long generation;
+
+        Entry(MembershipInfo info, long generation) {
+            this.info = info;
+            this.generation = generation;
+        }
+    }
+
+    private class Segment extends LinkedHashMap<Integer, Entry> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+
+            return false;
+        }
+    }
+
+    private final EventStore storage;
+    private final int capacity;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final IntLongDynamicArray generations = new IntLongDynamicArray();
+    private final LongAdder hits, misses, evictions, invalidations;
+
+    public MembershipCache(EventStore storage, int capacity) {
+        if (capacity < SEGMENTS) {
+            throw new IllegalArgumentException("Cache capacity must be at least " + SEGMENTS);
+        }
+
+        this.storage = storage;
+        this.capacity = capacity;
+
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(capacity / SEGMENTS);
+        }
+
+        var metrics = storage.getMetrics();
+        this.hits = metrics.counter("membershipCache.hits");
+        this.misses = metrics.counter("membershipCache.misses");
+        this.evictions = metrics.counter("membershipCache.evictions");
+        this.invalidations = metrics.counter("membershipCache.invalidations");
+
+        storage.addAppendListener((event) -> invalidate(event.getMembershipId()));
+    }
+
+    public static MembershipCache of(EventStore storage, int capacity) {
+        var cache = storage.getComponent(MembershipCache.class, (owner) -> new MembershipCache(owner, capacity));
+
+        if (cache.capacity != capacity) {
+            throw new IllegalArgumentException("Storage already has a membership cache of capacity " + cache.capacity);
+        }
+
+        return cache;
+    }
+
+    public MembershipInfo get(int membershipId) {
+        var generation = generationOf(membershipId);
+        var segment = segmentOf(membershipId);
+        Entry entry;
+
+        synchronized (segment) {
+            entry = segment.get(membershipId);
+        }
+
+        if (entry != null && entry.generation == generation) {
+            hits.increment();
+            return new MembershipInfo(entry.info);
+        }
+
+        misses.increment();
+        var info = storage.transactionOn(membershipId, MembershipInfo.PROJECTION, (state, history) -> state);
+
+        synchronized (segment) {
+            var current = segment.get(membershipId);
+
+            if (current == null || current.generation < generation) {
+                segment.put(membershipId, new Entry(new MembershipInfo(info), generation));
+            }
+        }
+
+        return info;
+    }
+
+    public void invalidate(int membershipId) {
+        while (true) {
+            var generation = generations.get(membershipId);
+
+            if (generations.compareAndSet(membershipId, generation, generation == IntLongDynamicArray.EMPTY ? 1 : generation + 1)) {
+                break;
+            }
+        }
+
+        invalidations.increment();
+    }
+
+    private long generationOf(int membershipId) {
+        var generation = generations.get(membershipId);
+
+        return generation == IntLongDynamicArray.EMPTY ? 0 : generation;
+    }
+
+    private Segment segmentOf(int membershipId) {
+        return segments[membershipId & (SEGMENTS - 1)];
+    }
+}
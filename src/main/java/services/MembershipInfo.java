@@ -1,37 +1,70 @@
 package services;
 
 import events.*;
+import storage.Projection;
 
 import java.time.Duration;
 import java.util.Date;
 import java.util.List;
 
 public class MembershipInfo {
+    public static final Projection<MembershipInfo> PROJECTION = new Projection<>() {
+        @Override
+        public MembershipInfo initial(int membershipId) {
+            return new MembershipInfo(membershipId);
+        }
+
+        @Override
+        public MembershipInfo copy(MembershipInfo state) {
+            return new MembershipInfo(state);
+        }
+
+        @Override
+        public void apply(MembershipInfo state, Event event) {
+            state.apply(event);
+        }
+    };
+
     private final int membershipId;
-    private final Date registerDate, expireDate;
+    private long registerTime, expireTime;
     private int attendanceCount;
     private boolean entered;
 
-    public MembershipInfo(int membershipId, List<Event> history) {
+    public MembershipInfo(int membershipId) {
         this.membershipId = membershipId;
-        this.registerDate = new Date(0);
-        this.expireDate = new Date(0);
+        this.registerTime = 0;
+        this.expireTime = 0;
         this.attendanceCount = 0;
         this.entered = false;
+    }
+
+    public MembershipInfo(MembershipInfo other) {
+        this.membershipId = other.membershipId;
+        this.registerTime = other.registerTime;
+        this.expireTime = other.expireTime;
+        this.attendanceCount = other.attendanceCount;
+        this.entered = other.entered;
+    }
 
-        history.forEach((event) -> {
-            if (event instanceof MembershipSetUp) {
-                this.setRegisterDate(((MembershipSetUp) event).getRegisterDate());
-                this.setExpireDate(((MembershipSetUp) event).getExpireDate());
-            } else if (event instanceof MembershipExtended) {
-                this.extendExpireDate(((MembershipExtended) event).getDuration());
-            } else if (event instanceof MemberEntered) {
-                this.addAttendance();
-                this.setEntered(true);
-            } else if (event instanceof MemberLeft) {
-                this.setEntered(false);
-            }
-        });
+    public MembershipInfo(int membershipId, List<Event> history) {
+        this(membershipId);
+        history.forEach(this::apply);
+    }
+
+    public void apply(Event event) {
+        if (event instanceof MembershipSetUp) {
+            this.setRegisterTime(((MembershipSetUp) event).getRegisterTime());
+            this.setExpireTime(((MembershipSetUp) event).getExpireTime());
+        } else if (event instanceof MembershipExtended) {
+            this.extendExpireTime(((MembershipExtended) event).getDurationMillis());
+        } else if (event instanceof MemberEntered) {
+            this.addAttendance();
+            this.setEntered(true);
+        } else if (event instanceof MemberLeft) {
+            this.setEntered(false);
+        } else if (event instanceof VisitsCompacted) {
+            this.attendanceCount += ((VisitsCompacted) event).getAttendanceCount();
+        }
     }
 
     public int getMembershipId() {
@@ -39,11 +72,19 @@ public class MembershipInfo {
     }
 
     public Date getRegisterDate() {
-        return registerDate;
+        return new Date(registerTime);
     }
 
     public Date getExpireDate() {
-        return expireDate;
+        return new Date(expireTime);
+    }
+
+    public long getRegisterTime() {
+        return registerTime;
+    }
+
+    public long getExpireTime() {
+        return expireTime;
     }
 
     public int getAttendanceCount() {
@@ -55,19 +96,31 @@ public class MembershipInfo {
     }
 
     public void setRegisterDate(Date registerDate) {
-        if (this.registerDate.getTime() == new Date(0).getTime()) {
-            this.registerDate.setTime(registerDate.getTime());
-        }
+        setRegisterTime(registerDate.getTime());
     }
 
     public void setExpireDate(Date expireDate) {
-        if (this.expireDate.getTime() == new Date(0).getTime()) {
-            this.expireDate.setTime(expireDate.getTime());
-        }
+        setExpireTime(expireDate.getTime());
     }
 
     public void extendExpireDate(Duration duration) {
-        this.expireDate.setTime(this.expireDate.getTime() + duration.toMillis());
+        extendExpireTime(duration.toMillis());
+    }
+
+    public void setRegisterTime(long registerTime) {
+        if (this.registerTime == 0) {
+            this.registerTime = registerTime;
+        }
+    }
+
+    public void setExpireTime(long expireTime) {
+        if (this.expireTime == 0) {
+            this.expireTime = expireTime;
+        }
+    }
+
+    public void extendExpireTime(long durationMillis) {
+        this.expireTime += durationMillis;
     }
 
     public void addAttendance() {
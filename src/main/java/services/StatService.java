@@ -3,93 +3,613 @@ package services;
 import events.Event;
 import events.MemberEntered;
 import events.MemberLeft;
-import storage.EventStorage;
+import storage.EventStore;
+import storage.ShardedSubscriber;
 import storage.StatSubscriber;
-import utils.DateUtils;
-import utils.DynamicArray;
-import utils.LockFreeDynamicArray;
+import utils.ConcurrentFenwickTree;
+import utils.IntLongDynamicArray;
+import utils.LogLinearHistogram;
+import utils.ZoneDays;
 
+import java.time.DayOfWeek;
 import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Date;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.function.BiConsumer;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
 
-public class StatService extends EventHandlingService implements StatSubscriber {
+public class StatService extends EventHandlingService implements ShardedSubscriber<StatService> {
     public static class Statistics {
-        private final AtomicReference<Duration> duration = new AtomicReference<>(Duration.ZERO);
-        private final AtomicInteger attendanceCount = new AtomicInteger(0);
+        private static final int HISTOGRAM_PRECISION_BITS = 4;
+
+        private final LongAdder durationMillis = new LongAdder();
+        private final LongAdder attendanceCount = new LongAdder();
+        private final LogLinearHistogram durations = new LogLinearHistogram(HISTOGRAM_PRECISION_BITS);
 
         public Duration averageDuration() {
-            return duration.get().dividedBy(attendanceCount.get());
+            return Duration.ofMillis(durationMillis.sum() / attendanceCount.sum());
         }
 
         public Statistics addAttendance(Duration duration) {
-            attendanceCount.incrementAndGet();
-            Duration prev;
+            return addAttendance(duration.toMillis());
+        }
 
-            do {
-                prev = this.duration.get();
-            } while (!this.duration.compareAndSet(prev, prev.plus(duration)));
+        public Statistics addAttendance(long durationMillis) {
+            this.durationMillis.add(durationMillis);
+            this.durations.record(durationMillis);
+            this.attendanceCount.increment();
+
+            return this;
+        }
+
+        public Statistics add(Statistics other) {
+            this.durationMillis.add(other.durationMillis.sum());
+            this.durations.add(other.durations);
+            this.attendanceCount.add(other.attendanceCount.sum());
 
             return this;
         }
 
         public int getAttendance() {
-            return attendanceCount.get();
+            return attendanceCount.intValue();
+        }
+
+        public Duration getTotalDuration() {
+            return Duration.ofMillis(durationMillis.sum());
+        }
+
+        public Duration percentileDuration(double percentile) {
+            return Duration.ofMillis(durations.valueAtPercentile(percentile));
+        }
+    }
+
+    public static class RangeStatistics {
+        private final Date from, to;
+        private final long attendance;
+        private final long durationMillis;
+
+        public RangeStatistics(Date from, Date to, long attendance, long durationMillis) {
+            this.from = from;
+            this.to = to;
+            this.attendance = attendance;
+            this.durationMillis = durationMillis;
+        }
+
+        public Date getFrom() {
+            return from;
+        }
+
+        public Date getTo() {
+            return to;
+        }
+
+        public long getAttendance() {
+            return attendance;
+        }
+
+        public Duration getTotalDuration() {
+            return Duration.ofMillis(durationMillis);
+        }
+
+        public Duration averageDuration() {
+            return attendance == 0 ? Duration.ZERO : Duration.ofMillis(durationMillis / attendance);
+        }
+    }
+
+    public static class HourlyOccupancy {
+        private final Date from;
+        private final long visitors;
+        private final long peak;
+
+        public HourlyOccupancy(Date from, long visitors, long peak) {
+            this.from = from;
+            this.visitors = visitors;
+            this.peak = peak;
+        }
+
+        public Date getFrom() {
+            return from;
+        }
+
+        public long getVisitors() {
+            return visitors;
+        }
+
+        public long getPeak() {
+            return peak;
+        }
+    }
+
+    private static class DayOccupancy {
+        final AtomicLongArray visitors = new AtomicLongArray(HOURS_IN_DAY);
+        final AtomicLongArray peaks = new AtomicLongArray(HOURS_IN_DAY);
+    }
+
+    private class PeakTracker implements StatSubscriber {
+        private final BitSet present = new BitSet();
+        private long occupancy;
+
+        @Override
+        public void process(Event event) {
+            process(Long.MAX_VALUE, event);
+        }
+
+        @Override
+        public void process(long sequence, Event event) {
+            if (event instanceof MemberEntered) {
+                enter(event.getMembershipId(), ((MemberEntered) event).getEnterTime(), sequence >= peaksFrom);
+            } else if (event instanceof MemberLeft) {
+                leave(event.getMembershipId());
+            }
+        }
+
+        void enter(int membershipId, long time, boolean recordsPeak) {
+            if (!present.get(membershipId)) {
+                present.set(membershipId);
+                occupancy++;
+
+                if (recordsPeak) {
+                    recordPeak(time, occupancy + getOccupancy() - occupancies.get(slot));
+                }
+            }
+        }
+
+        void leave(int membershipId) {
+            if (present.get(membershipId)) {
+                present.clear(membershipId);
+                occupancy--;
+            }
+        }
+    }
+
+    private static class VisitLog {
+        private final long end;
+        private long read;
+        private long[] times = new long[16];
+        private int[] members = new int[16];
+        private int size, next;
+
+        VisitLog(long end) {
+            this.end = end;
+        }
+
+        void add(Event event) {
+            if (read++ >= end) {
+                return;
+            }
+
+            if (event instanceof MemberEntered) {
+                add(event.getMembershipId(), ((MemberEntered) event).getEnterTime());
+            } else if (event instanceof MemberLeft) {
+                add(~event.getMembershipId(), ((MemberLeft) event).getExitTime());
+            }
+        }
+
+        private void add(int member, long time) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, 2 * size);
+                members = Arrays.copyOf(members, 2 * size);
+            }
+
+            times[size] = time;
+            members[size++] = member;
+        }
+
+        boolean isBefore(VisitLog other) {
+            return next < size && (other == null || times[next] < other.times[other.next]);
         }
     }
 
-    private final DynamicArray<Date> lastEnter = new LockFreeDynamicArray<>();
-    private final Map<Date, Statistics> stats = new ConcurrentHashMap<>();
+    private static final int INDEXED_DAYS = 1 << 16;
+    private static final int HOURS_IN_DAY = 24;
+    private static final long HOUR_MILLIS = 60 * 60 * 1000L;
+    private static final int OCCUPANCY_STRIDE = 8;
+
+    private final ZoneDays zoneDays;
+    private final int fromMembershipId, toMembershipId;
+    private final boolean tracksPeaks;
+    private final long peaksFrom;
+    private final List<StatService> partitions = new ArrayList<>();
+    private final IntLongDynamicArray lastEnter = new IntLongDynamicArray();
+    private final AtomicReferenceArray<Statistics> stats = new AtomicReferenceArray<>(INDEXED_DAYS);
+    private final AtomicInteger daysWithAttendance = new AtomicInteger(0);
     private final Statistics totalStats = new Statistics();
+    private final ConcurrentFenwickTree attendanceByDay = new ConcurrentFenwickTree(INDEXED_DAYS);
+    private final ConcurrentFenwickTree durationByDay = new ConcurrentFenwickTree(INDEXED_DAYS);
+    private final AtomicLongArray occupancies;
+    private final int slot;
+    private final LongAccumulator peakOccupancy = new LongAccumulator(Math::max, 0);
+    private final AtomicReferenceArray<DayOccupancy> occupancyByDay = new AtomicReferenceArray<>(INDEXED_DAYS);
 
-    public StatService(EventStorage storage) {
+    public StatService(EventStore storage) {
+        this(storage, ZoneOffset.UTC);
+    }
+
+    public StatService(EventStore storage, ZoneId zone) {
+        this(storage, zone, ForkJoinPool.commonPool());
+    }
+
+    public StatService(EventStore storage, ZoneId zone, ForkJoinPool replayPool) {
+        this(storage, zone, 0, Integer.MAX_VALUE, true,
+                new AtomicLongArray(storage.getPartitions() * OCCUPANCY_STRIDE), 0, 0);
+
+        if (storage.getPartitions() == 1) {
+            storage.subscribe(this, 0, replayPool);
+            return;
+        }
+
+        var ends = new long[storage.getPartitions()];
+
+        for (int partition = 0; partition < ends.length; partition++) {
+            ends[partition] = storage.getPartition(partition).getSequence();
+        }
+
+        replayPeaks(storage, ends);
+
+        for (int partition = 0; partition < ends.length; partition++) {
+            var partial = new StatService(storage.getPartition(partition), zone, 0, Integer.MAX_VALUE, true,
+                    occupancies, partition * OCCUPANCY_STRIDE, ends[partition]);
+            partitions.add(partial);
+            partial.storage.subscribe(partial, 0, replayPool);
+        }
+    }
+
+    private StatService(EventStore storage, ZoneId zone, int fromMembershipId, int toMembershipId,
+                        boolean tracksPeaks, AtomicLongArray occupancies, int slot, long peaksFrom) {
         super(storage);
-        storage.subscribe(this);
+        this.zoneDays = new ZoneDays(zone);
+        this.fromMembershipId = fromMembershipId;
+        this.toMembershipId = toMembershipId;
+        this.tracksPeaks = tracksPeaks;
+        this.occupancies = occupancies;
+        this.slot = slot;
+        this.peaksFrom = peaksFrom;
+    }
+
+    @Override
+    public StatService createShard(int fromMembershipId, int toMembershipId) {
+        return new StatService(storage, getZone(), fromMembershipId, toMembershipId, false,
+                new AtomicLongArray(1), 0, Long.MAX_VALUE);
+    }
+
+    @Override
+    public StatSubscriber createOrderedShard() {
+        return new PeakTracker();
+    }
+
+    @Override
+    public void merge(StatService shard) {
+        for (int day = 0; day < INDEXED_DAYS; day++) {
+            var dayStats = shard.stats.get(day);
+
+            if (dayStats != null) {
+                statisticsOfDay(day).add(dayStats);
+                attendanceByDay.add(day, dayStats.attendanceCount.sum());
+                durationByDay.add(day, dayStats.durationMillis.sum());
+            }
+        }
+
+        totalStats.add(shard.totalStats);
+        occupancies.addAndGet(slot, shard.occupancies.get(shard.slot));
+
+        for (int day = 0; day < INDEXED_DAYS; day++) {
+            var dayOccupancy = shard.occupancyByDay.get(day);
+
+            if (dayOccupancy != null) {
+                var merged = occupancyOfDay(day);
+
+                for (int hour = 0; hour < HOURS_IN_DAY; hour++) {
+                    merged.visitors.addAndGet(hour, dayOccupancy.visitors.get(hour));
+                }
+            }
+        }
+
+        for (int id = shard.fromMembershipId; id < shard.toMembershipId; id++) {
+            var enter = shard.lastEnter.get(id - shard.fromMembershipId);
+
+            if (enter != IntLongDynamicArray.EMPTY) {
+                lastEnter.put(id, enter);
+            }
+        }
     }
 
     @Override
     public void process(Event event) {
-        var membershipId = event.getMembershipId();
+        process(Long.MAX_VALUE, event);
+    }
+
+    @Override
+    public void process(long sequence, Event event) {
+        var membershipId = event.getMembershipId() - fromMembershipId;
 
         if (event instanceof MemberEntered) {
-            ensureMembershipId(membershipId);
-            lastEnter.put(membershipId, ((MemberEntered) event).getEnterDate());
-        } else if (event instanceof MemberLeft) {
-            ensureMembershipId(membershipId);
-            Date enter = lastEnter.get(membershipId);
+            var enter = ((MemberEntered) event).getEnterTime();
+
+            if (lastEnter.getAndSet(membershipId, enter) == IntLongDynamicArray.EMPTY) {
+                occupancies.incrementAndGet(slot);
+                recordEnterOccupancy(enter);
 
-            if (enter != null) {
-                Date enterDay = DateUtils.truncateToDays(enter);
-                Date exit = ((MemberLeft) event).getExitDate();
-                Duration duration = Duration.between(enter.toInstant(), exit.toInstant());
+                if (tracksPeaks && sequence >= peaksFrom) {
+                    recordPeak(enter, getOccupancy());
+                }
+            }
+        } else if (event instanceof MemberLeft) {
+            long enter = lastEnter.getAndSet(membershipId, IntLongDynamicArray.EMPTY);
 
-                stats.putIfAbsent(enterDay, new Statistics());
-                stats.computeIfPresent(enterDay, (date, statistics) -> statistics.addAttendance(duration));
+            if (enter != IntLongDynamicArray.EMPTY) {
+                occupancies.decrementAndGet(slot);
+                recordStayOccupancy(enter, ((MemberLeft) event).getExitTime());
+                long duration = ((MemberLeft) event).getExitTime() - enter;
                 totalStats.addAttendance(duration);
-                lastEnter.put(membershipId, null);
+
+                var day = zoneDays.epochDay(enter);
+
+                if (day >= 0 && day < INDEXED_DAYS) {
+                    statisticsOfDay((int) day).addAttendance(duration);
+                    attendanceByDay.add((int) day, 1);
+                    durationByDay.add((int) day, duration);
+                }
             }
         }
     }
 
     public Statistics getStatisticsOfDate(Date date) {
-        return stats.getOrDefault(date, null);
+        var day = zoneDays.epochDay(date.getTime());
+
+        if (day < 0 || day >= INDEXED_DAYS) {
+            return null;
+        }
+        if (partitions.isEmpty()) {
+            return stats.get((int) day);
+        }
+
+        Statistics merged = null;
+
+        for (var partition : partitions) {
+            var dayStats = partition.stats.get((int) day);
+
+            if (dayStats != null) {
+                merged = (merged == null ? new Statistics() : merged).add(dayStats);
+            }
+        }
+
+        return merged;
     }
 
     public Duration getAverageDuration() {
-        return totalStats.averageDuration();
+        return totalStatistics().averageDuration();
+    }
+
+    public Duration getPercentileDuration(double percentile) {
+        return totalStatistics().percentileDuration(percentile);
     }
 
     public int getAverageAttendance() {
-        return totalStats.attendanceCount.get() / stats.size();
+        return totalStatistics().getAttendance() / daysWithAttendance();
+    }
+
+    public long getOccupancy() {
+        long present = 0;
+
+        for (int i = 0; i < occupancies.length(); i += OCCUPANCY_STRIDE) {
+            present += occupancies.get(i);
+        }
+
+        return present;
+    }
+
+    public long getPeakOccupancy() {
+        var peak = peakOccupancy.get();
+
+        for (var partition : partitions) {
+            peak = Math.max(peak, partition.getPeakOccupancy());
+        }
+
+        return peak;
+    }
+
+    public List<HourlyOccupancy> getHourlyOccupancy(Date date) {
+        var day = zoneDays.epochDay(date.getTime());
+        List<HourlyOccupancy> result = new ArrayList<>(HOURS_IN_DAY);
+
+        for (int hour = 0; hour < HOURS_IN_DAY; hour++) {
+            var from = Date.from(LocalDate.ofEpochDay(day).atTime(hour, 0).atZone(getZone()).toInstant());
+            var ownOccupancy = partitions.isEmpty() || day < 0 || day >= INDEXED_DAYS ? null : occupancyByDay.get((int) day);
+            long visitors = 0, peak = ownOccupancy == null ? 0 : ownOccupancy.peaks.get(hour);
+
+            for (var part : parts()) {
+                var dayOccupancy = day >= 0 && day < INDEXED_DAYS ? part.occupancyByDay.get((int) day) : null;
+
+                if (dayOccupancy != null) {
+                    visitors += dayOccupancy.visitors.get(hour);
+                    peak = Math.max(peak, dayOccupancy.peaks.get(hour));
+                }
+            }
+
+            result.add(new HourlyOccupancy(from, visitors, peak));
+        }
+
+        return result;
+    }
+
+    public ZoneId getZone() {
+        return zoneDays.getZone();
+    }
+
+    public RangeStatistics getStatistics(Date from, Date to) {
+        return rangeOfDays(zoneDays.epochDay(from.getTime()), zoneDays.epochDay(to.getTime()));
+    }
+
+    public List<RangeStatistics> getWeeklyStatistics(Date from, Date to) {
+        return rollUp(from, to, (day) -> day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).plusWeeks(1));
+    }
+
+    public List<RangeStatistics> getMonthlyStatistics(Date from, Date to) {
+        return rollUp(from, to, (day) -> day.withDayOfMonth(1).plusMonths(1));
+    }
+
+    // Partitions share no sequence, so the logs are interleaved by visit time for the peaks.
+    private void replayPeaks(EventStore storage, long[] ends) {
+        var logs = new VisitLog[ends.length];
+
+        for (int partition = 0; partition < ends.length; partition++) {
+            var log = logs[partition] = new VisitLog(ends[partition]);
+            storage.getPartition(partition).forEachEvent(log::add);
+        }
+
+        var tracker = new PeakTracker();
+
+        while (true) {
+            VisitLog earliest = null;
+
+            for (var log : logs) {
+                if (log.isBefore(earliest)) {
+                    earliest = log;
+                }
+            }
+
+            if (earliest == null) {
+                return;
+            }
+
+            var member = earliest.members[earliest.next];
+            var time = earliest.times[earliest.next++];
+
+            if (member >= 0) {
+                tracker.enter(member, time, true);
+            } else {
+                tracker.leave(~member);
+            }
+        }
+    }
+
+    private List<StatService> parts() {
+        return partitions.isEmpty() ? List.of(this) : partitions;
     }
 
-    public void ensureMembershipId(int membershipId) {
-        while (lastEnter.getSize() <= membershipId) {
-            lastEnter.pushBack(null);
+    private Statistics totalStatistics() {
+        if (partitions.isEmpty()) {
+            return totalStats;
+        }
+
+        var merged = new Statistics();
+        partitions.forEach((partition) -> merged.add(partition.totalStats));
+
+        return merged;
+    }
+
+    private int daysWithAttendance() {
+        if (partitions.isEmpty()) {
+            return daysWithAttendance.get();
+        }
+
+        var days = 0;
+
+        for (int day = 0; day < INDEXED_DAYS; day++) {
+            for (var partition : partitions) {
+                if (partition.stats.get(day) != null) {
+                    days++;
+                    break;
+                }
+            }
+        }
+
+        return days;
+    }
+
+    private Statistics statisticsOfDay(int day) {
+        var dayStats = stats.get(day);
+
+        if (dayStats == null) {
+            if (stats.compareAndSet(day, null, new Statistics())) {
+                daysWithAttendance.incrementAndGet();
+            }
+            dayStats = stats.get(day);
+        }
+
+        return dayStats;
+    }
+
+    private DayOccupancy occupancyOfDay(int day) {
+        var dayOccupancy = occupancyByDay.get(day);
+
+        if (dayOccupancy == null) {
+            occupancyByDay.compareAndSet(day, null, new DayOccupancy());
+            dayOccupancy = occupancyByDay.get(day);
         }
+
+        return dayOccupancy;
+    }
+
+    private void recordEnterOccupancy(long enter) {
+        var localHour = Math.floorDiv(zoneDays.localMillis(enter), HOUR_MILLIS);
+        var day = Math.floorDiv(localHour, HOURS_IN_DAY);
+
+        if (day >= 0 && day < INDEXED_DAYS) {
+            occupancyOfDay((int) day).visitors.incrementAndGet(Math.floorMod(localHour, HOURS_IN_DAY));
+        }
+    }
+
+    private void recordPeak(long enter, long present) {
+        var localHour = Math.floorDiv(zoneDays.localMillis(enter), HOUR_MILLIS);
+        var day = Math.floorDiv(localHour, HOURS_IN_DAY);
+        peakOccupancy.accumulate(present);
+
+        if (day >= 0 && day < INDEXED_DAYS) {
+            occupancyOfDay((int) day).peaks.accumulateAndGet(Math.floorMod(localHour, HOURS_IN_DAY), present, Math::max);
+        }
+    }
+
+    private void recordStayOccupancy(long enter, long exit) {
+        var localExit = zoneDays.localMillis(exit);
+
+        for (var localHour = Math.floorDiv(zoneDays.localMillis(enter), HOUR_MILLIS) + 1;
+             localHour * HOUR_MILLIS < localExit; localHour++) {
+            var day = Math.floorDiv(localHour, HOURS_IN_DAY);
+
+            if (day >= 0 && day < INDEXED_DAYS) {
+                occupancyOfDay((int) day).visitors.incrementAndGet(Math.floorMod(localHour, HOURS_IN_DAY));
+            }
+        }
+    }
+
+    private List<RangeStatistics> rollUp(Date from, Date to, UnaryOperator<LocalDate> nextPeriod) {
+        List<RangeStatistics> result = new ArrayList<>();
+        var end = zoneDays.epochDay(to.getTime());
+
+        for (var day = zoneDays.epochDay(from.getTime()); day < end; ) {
+            var next = Math.min(end, nextPeriod.apply(LocalDate.ofEpochDay(day)).toEpochDay());
+            result.add(rangeOfDays(day, next));
+            day = next;
+        }
+
+        return result;
+    }
+
+    private RangeStatistics rangeOfDays(long fromDay, long toDay) {
+        var from = (int) Math.max(0, Math.min(fromDay, INDEXED_DAYS));
+        var to = (int) Math.max(0, Math.min(toDay, INDEXED_DAYS));
+
+        long attendance = 0, durationMillis = 0;
+
+        for (var part : parts()) {
+            attendance += part.attendanceByDay.rangeSum(from, to);
+            durationMillis += part.durationByDay.rangeSum(from, to);
+        }
+
+        return new RangeStatistics(new Date(zoneDays.startOfDay(fromDay)), new Date(zoneDays.startOfDay(toDay)),
+                attendance, durationMillis);
     }
 }
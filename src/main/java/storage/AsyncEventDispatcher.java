@@ -0,0 +1,137 @@
+package storage;
+
+import events.Event;
+import utils.SequenceWatermark;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+public class AsyncEventDispatcher implements EventDispatcher {
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+    private static class Task {
+        final long sequence;
+        final Event event;
+        final List<StatSubscriber> subscribers;
+
+        Task(long sequence, Event event, List<StatSubscriber> subscribers) {
+            this.sequence = sequence;
+            this.event = event;
+            this.subscribers = subscribers;
+        }
+    }
+
+    private class Partition {
+        final BlockingQueue<Task> queue;
+        final Thread worker;
+
+        Partition(int index, int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.worker = new Thread(this::drain, "event-dispatcher-" + index);
+            this.worker.setDaemon(true);
+            this.worker.start();
+        }
+
+        void enqueue(Task task) {
+            try {
+                queue.put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while publishing event", e);
+            }
+        }
+
+        void drain() {
+            while (running || !queue.isEmpty()) {
+                Task task;
+
+                try {
+                    task = queue.poll(10, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                if (task == null) {
+                    continue;
+                }
+
+                for (var subscriber : task.subscribers) {
+                    try {
+                        subscriber.process(task.sequence, task.event);
+                    } catch (RuntimeException e) {
+                        failures.increment();
+                    }
+                }
+
+                watermark.mark(task.sequence);
+            }
+        }
+    }
+
+    private final Partition[] partitions;
+    private final LongAdder failures = new LongAdder();
+    private volatile SequenceWatermark watermark = new SequenceWatermark(0);
+    private volatile boolean running = true;
+
+    public AsyncEventDispatcher(int partitions) {
+        this(partitions, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public AsyncEventDispatcher(int partitions, int queueCapacity) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Partition count must be positive");
+        }
+
+        this.partitions = new Partition[partitions];
+
+        for (int i = 0; i < partitions; i++) {
+            this.partitions[i] = new Partition(i, queueCapacity);
+        }
+    }
+
+    @Override
+    public void dispatch(long sequence, Event event, List<StatSubscriber> subscribers) {
+        if (!running) {
+            throw new IllegalStateException("Dispatcher is closed");
+        }
+
+        partitions[Math.floorMod(event.getMembershipId(), partitions.length)].enqueue(new Task(sequence, event, subscribers));
+    }
+
+    @Override
+    public void resume(long sequence) {
+        watermark = new SequenceWatermark(sequence);
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public void awaitSequence(long sequence) {
+        while (watermark.get() < sequence) {
+            if (!running) {
+                throw new IllegalStateException("Dispatcher is closed");
+            }
+            LockSupport.parkNanos(50_000);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+
+        for (var partition : partitions) {
+            try {
+                partition.worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package storage;
+
+import events.Event;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+class CatchUpSubscriber implements StatSubscriber {
+    private static class Pending {
+        final long sequence;
+        final Event event;
+
+        Pending(long sequence, Event event) {
+            this.sequence = sequence;
+            this.event = event;
+        }
+    }
+
+    private final StatSubscriber target;
+    private final long fromSequence;
+    private final Queue<Pending> pending = new ArrayDeque<>();
+    private volatile long liveFrom = Long.MAX_VALUE;
+    private volatile boolean live = false;
+
+    CatchUpSubscriber(StatSubscriber target, long fromSequence) {
+        this.target = target;
+        this.fromSequence = fromSequence;
+    }
+
+    @Override
+    public void process(Event event) {
+        throw new UnsupportedOperationException("Catch-up subscriptions need event sequence numbers");
+    }
+
+    @Override
+    public void process(long sequence, Event event) {
+        if (!live) {
+            synchronized (this) {
+                if (!live) {
+                    pending.add(new Pending(sequence, event));
+                    return;
+                }
+            }
+        }
+
+        deliver(sequence, event);
+    }
+
+    synchronized void goLive(long liveFrom) {
+        this.liveFrom = liveFrom;
+
+        for (var event = pending.poll(); event != null; event = pending.poll()) {
+            deliver(event.sequence, event.event);
+        }
+
+        live = true;
+    }
+
+    private void deliver(long sequence, Event event) {
+        if (sequence >= liveFrom && sequence >= fromSequence) {
+            target.process(sequence, event);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package storage;
+
+import events.Event;
+import events.EventCodec;
+import events.MemberEntered;
+import events.MemberLeft;
+import events.MembershipSetUp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+public class EventArchive {
+    public static final int MAGIC = 0x45565453;
+    public static final byte VERSION = 1;
+    public static final int FRAME_EVENTS = 4096;
+
+    private EventArchive() {
+    }
+
+    // Events without a time of their own follow their member's set-up; the filter must see events in log order.
+    public static Predicate<Event> between(Date from, Date to) {
+        var members = new BitSet();
+
+        return (event) -> {
+            var time = timeOf(event);
+
+            if (time == null) {
+                return members.get(event.getMembershipId());
+            }
+
+            var inside = from.getTime() <= time && time < to.getTime();
+
+            if (inside && event instanceof MembershipSetUp) {
+                members.set(event.getMembershipId());
+            }
+
+            return inside;
+        };
+    }
+
+    public static Predicate<Event> ofTypes(Set<Class<? extends Event>> types) {
+        return (event) -> types.contains(event.getClass());
+    }
+
+    public static long write(EventStore storage, OutputStream out, Predicate<Event> filter) throws IOException {
+        var data = new DataOutputStream(new BufferedOutputStream(out));
+        var frame = ByteBuffer.allocate(FRAME_EVENTS * EventCodec.RECORD_SIZE);
+        var written = new long[1];
+
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeInt(EventCodec.RECORD_SIZE);
+
+        try {
+            storage.forEachEvent((event) -> {
+                if (!filter.test(event)) {
+                    return;
+                }
+
+                EventCodec.encode(event, frame);
+                written[0]++;
+
+                if (!frame.hasRemaining()) {
+                    writeFrame(data, frame);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        writeFrame(data, frame);
+        data.writeInt(0);
+        data.flush();
+
+        return written[0];
+    }
+
+    public static long read(InputStream in, EventStore storage) throws IOException {
+        if (storage.getSize() != 0 || storage.getSequence() != 0) {
+            throw new IllegalArgumentException("Events can only be read into an empty storage");
+        }
+
+        var data = new DataInputStream(new BufferedInputStream(in));
+
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not an event archive");
+        }
+        if (data.readByte() != VERSION || data.readInt() != EventCodec.RECORD_SIZE) {
+            throw new IOException("Unsupported event archive version");
+        }
+
+        var frame = ByteBuffer.allocate(FRAME_EVENTS * EventCodec.RECORD_SIZE);
+        List<Event> events = new ArrayList<>(FRAME_EVENTS);
+        long read = 0;
+
+        for (var count = data.readInt(); count != 0; count = data.readInt()) {
+            if (count < 0 || count > FRAME_EVENTS) {
+                throw new IOException("Corrupted frame of " + count + " events");
+            }
+
+            frame.clear().limit(count * EventCodec.RECORD_SIZE);
+            data.readFully(frame.array(), 0, frame.limit());
+
+            for (int i = 0; i < count; i++) {
+                events.add(EventCodec.decode(frame));
+            }
+
+            storage.importEvents(events);
+            read += count;
+            events.clear();
+        }
+
+        return read;
+    }
+
+    private static void writeFrame(DataOutputStream data, ByteBuffer frame) {
+        if (frame.position() == 0) {
+            return;
+        }
+
+        try {
+            data.writeInt(frame.position() / EventCodec.RECORD_SIZE);
+            data.write(frame.array(), 0, frame.position());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        frame.clear();
+    }
+
+    private static Long timeOf(Event event) {
+        if (event instanceof MembershipSetUp) {
+            return ((MembershipSetUp) event).getRegisterTime();
+        } else if (event instanceof MemberEntered) {
+            return ((MemberEntered) event).getEnterTime();
+        } else if (event instanceof MemberLeft) {
+            return ((MemberLeft) event).getExitTime();
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,23 @@
+package storage;
+
+import events.Event;
+
+import java.io.Closeable;
+import java.util.List;
+
+public interface EventDispatcher extends Closeable {
+    EventDispatcher SYNC = (sequence, event, subscribers) ->
+            subscribers.forEach((subscriber) -> subscriber.process(sequence, event));
+
+    void dispatch(long sequence, Event event, List<StatSubscriber> subscribers);
+
+    default void resume(long sequence) {
+    }
+
+    default void awaitSequence(long sequence) {
+    }
+
+    @Override
+    default void close() {
+    }
+}
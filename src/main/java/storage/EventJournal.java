@@ -0,0 +1,203 @@
+package storage;
+
+import events.Event;
+import events.EventCodec;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+public class EventJournal implements EventLog {
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    static final int RECORD_SIZE = EventCodec.RECORD_SIZE + Integer.BYTES;
+    private static final int PAYLOAD_SIZE = EventCodec.RECORD_SIZE;
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    private final List<MappedByteBuffer> sealed = new ArrayList<>();
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int segmentIndex;
+
+    public EventJournal(Path directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public EventJournal(Path directory, int segmentSize) {
+        if (segmentSize < RECORD_SIZE) {
+            throw new IllegalArgumentException("Segment is smaller than one record");
+        }
+
+        this.directory = directory;
+        this.segmentSize = segmentSize - segmentSize % RECORD_SIZE;
+    }
+
+    @Override
+    public synchronized void recover(Consumer<Event> consumer) {
+        try {
+            Files.createDirectories(directory);
+            var segments = listSegments();
+
+            for (int i = 0; i < segments.size(); i++) {
+                openSegment(segments.get(i));
+                var end = scan(consumer);
+
+                if (end < segmentSize) {
+                    truncate(end);
+                    for (int j = i + 1; j < segments.size(); j++) {
+                        Files.delete(segmentPath(segments.get(j)));
+                    }
+                    return;
+                }
+
+                if (i + 1 < segments.size()) {
+                    sealCurrent();
+                }
+            }
+
+            if (segment == null) {
+                openSegment(0);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void append(Event event) {
+        if (segment == null) {
+            throw new IllegalStateException("Journal is not recovered");
+        }
+
+        if (!segment.hasRemaining()) {
+            roll();
+        }
+
+        record.clear();
+        EventCodec.encode(event, record);
+        record.putInt(checksum());
+        segment.put(record.flip());
+    }
+
+    @Override
+    public synchronized void appendAll(List<Event> events) {
+        events.forEach(this::append);
+    }
+
+    @Override
+    public synchronized void force() {
+        sealed.forEach(MappedByteBuffer::force);
+        sealed.clear();
+
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (segment == null) {
+            return;
+        }
+
+        force();
+
+        try {
+            channel.truncate(segment.position());
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        segment = null;
+    }
+
+    private int checksum() {
+        crc.reset();
+        crc.update(record.array(), 0, PAYLOAD_SIZE);
+        return (int) crc.getValue();
+    }
+
+    private int scan(Consumer<Event> consumer) {
+        while (segment.remaining() >= RECORD_SIZE) {
+            var position = segment.position();
+            segment.get(position, record.array());
+            record.clear();
+
+            if (record.get(0) == 0 || checksum() != record.getInt(PAYLOAD_SIZE)) {
+                break;
+            }
+
+            consumer.accept(EventCodec.decode(record));
+            segment.position(position + RECORD_SIZE);
+        }
+
+        return segment.position();
+    }
+
+    private void truncate(int end) {
+        segment.position(end);
+        var tail = segment.duplicate();
+
+        while (tail.hasRemaining()) {
+            tail.put((byte) 0);
+        }
+
+        segment.force();
+    }
+
+    private void roll() {
+        sealCurrent();
+
+        try {
+            openSegment(segmentIndex + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void sealCurrent() {
+        sealed.add(segment);
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void openSegment(int index) throws IOException {
+        segmentIndex = index;
+        channel = FileChannel.open(segmentPath(index),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+
+    private Path segmentPath(int index) {
+        return directory.resolve(String.format("%010d%s", index, SEGMENT_SUFFIX));
+    }
+
+    private List<Integer> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map((path) -> path.getFileName().toString())
+                    .filter((name) -> name.endsWith(SEGMENT_SUFFIX))
+                    .map((name) -> Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package storage;
+
+public interface EventListFactory {
+    EventListFactory HEAP = HeapEventSequence::new;
+
+    EventSequence createSequence();
+}
@@ -0,0 +1,33 @@
+package storage;
+
+import events.Event;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+public interface EventLog extends Closeable {
+    void recover(Consumer<Event> consumer);
+
+    void append(Event event);
+
+    default CompletableFuture<Void> appendAsync(Event event) {
+        append(event);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    default void appendAll(List<Event> events) {
+        events.forEach(this::append);
+    }
+
+    default CompletableFuture<Void> appendAllAsync(List<Event> events) {
+        appendAll(events);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    void force();
+
+    @Override
+    void close();
+}
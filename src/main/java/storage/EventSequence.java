@@ -0,0 +1,21 @@
+package storage;
+
+import events.Event;
+
+public interface EventSequence {
+    long append(Event event);
+
+    Event get(long sequence);
+
+    default int membershipIdAt(long sequence) {
+        return get(sequence).getMembershipId();
+    }
+
+    long size();
+
+    // The event is no longer referenced by any history; the sequence may move it out of the heap.
+    default void evict(long sequence) {
+    }
+
+    void awaitAppended(long sequence);
+}
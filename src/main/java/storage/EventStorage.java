@@ -1,46 +1,729 @@
 package storage;
 
 import events.Event;
-import utils.DynamicArray;
-import utils.LockFreeDynamicArray;
+import events.VisitsCompacted;
+import utils.ChunkedDynamicArray;
+import utils.EventHistory;
 import utils.LockedEventList;
+import utils.Metrics;
+import utils.Snapshot;
+import utils.ValueRecorder;
+import utils.VersionedEventList;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
-public class EventStorage {
-    DynamicArray<LockedEventList> storage = new LockFreeDynamicArray<>();
-    List<StatSubscriber> subscribers = new ArrayList<>();
+public class EventStorage implements EventStore {
+    public enum ConcurrencyMode {
+        LOCKED,
+        OPTIMISTIC
+    }
+
+    private static class ReplayBucket {
+        long[] sequences;
+        Event[] events;
+        int size;
+
+        ReplayBucket(int capacity) {
+            this.sequences = new long[capacity];
+            this.events = new Event[capacity];
+        }
+
+        void add(long sequence, Event event) {
+            if (size == events.length) {
+                sequences = Arrays.copyOf(sequences, 2 * size);
+                events = Arrays.copyOf(events, 2 * size);
+            }
+
+            sequences[size] = sequence;
+            events[size++] = event;
+        }
+
+        void replay(StatSubscriber subscriber) {
+            for (int i = 0; i < size; i++) {
+                subscriber.process(sequences[i], events[i]);
+            }
+        }
+    }
+
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 32;
+    public static final int PARALLEL_REPLAY_THRESHOLD = 1 << 14;
+    private static final long DISPATCH_SAMPLE_MASK = 15;
+    private static final CompletableFuture<Void> DURABLE = CompletableFuture.completedFuture(null);
+
+    ChunkedDynamicArray<EventHistory> storage = new ChunkedDynamicArray<>();
+    final EventSequence eventLog;
+    List<StatSubscriber> subscribers = new CopyOnWriteArrayList<>();
+    List<Consumer<Event>> appendListeners = new CopyOnWriteArrayList<>();
+    private final Map<Class<?>, Object> components = new ConcurrentHashMap<>();
+    private final Object sequencer = new Object();
+    private volatile RuntimeException journalFailure;
+    private final int snapshotInterval;
+    private final EventLog journal;
+    private final ConcurrencyMode mode;
+    private final EventDispatcher dispatcher;
+    private final int partition, partitions;
+    private final Metrics metrics = new Metrics();
+    private final ValueRecorder lockWait = metrics.recorder("storage.lockWaitNanos");
+    private final ValueRecorder replayLength = metrics.recorder("storage.replayedEvents");
+    private final ValueRecorder dispatchTime = metrics.recorder("storage.dispatchNanos");
+
+    public static class Builder {
+        private int snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
+        private EventLog journal;
+        private EventListFactory eventLists = EventListFactory.HEAP;
+        private ConcurrencyMode mode = ConcurrencyMode.LOCKED;
+        private EventDispatcher dispatcher = EventDispatcher.SYNC;
+        private int partition = 0, partitions = 1;
+
+        private Builder() {
+        }
 
+        public Builder snapshotInterval(int snapshotInterval) {
+            this.snapshotInterval = snapshotInterval;
+            return this;
+        }
+
+        public Builder journal(EventLog journal) {
+            this.journal = journal;
+            return this;
+        }
+
+        public Builder eventLists(EventListFactory eventLists) {
+            this.eventLists = eventLists;
+            return this;
+        }
+
+        public Builder mode(ConcurrencyMode mode) {
+            this.mode = mode;
+            return this;
+        }
+
+        public Builder dispatcher(EventDispatcher dispatcher) {
+            this.dispatcher = dispatcher;
+            return this;
+        }
+
+        Builder partition(int partition, int partitions) {
+            this.partition = partition;
+            this.partitions = partitions;
+            return this;
+        }
+
+        public EventStorage build() {
+            return new EventStorage(this);
+        }
+    }
+
+    public EventStorage() {
+        this(builder());
+    }
+
+    private EventStorage(Builder builder) {
+        if (builder.snapshotInterval < 1) {
+            throw new IllegalArgumentException("Snapshot interval must be positive");
+        }
+        if (builder.mode == ConcurrencyMode.OPTIMISTIC && builder.eventLists != EventListFactory.HEAP) {
+            throw new IllegalArgumentException("Optimistic mode keeps membership histories on heap");
+        }
+
+        this.snapshotInterval = builder.snapshotInterval;
+        this.journal = builder.journal;
+        this.eventLog = builder.eventLists.createSequence();
+        this.mode = builder.mode;
+        this.dispatcher = builder.dispatcher;
+        this.partition = builder.partition;
+        this.partitions = builder.partitions;
+
+        if (journal instanceof GroupCommitWriter) {
+            metrics.include(((GroupCommitWriter) journal).getMetrics());
+        }
+        if (journal != null) {
+            journal.recover(this::restoreEvent);
+        }
+
+        dispatcher.resume(eventLog.size());
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
     public int registerEventList() {
-        return storage.pushBack(new LockedEventList(new ArrayList<>()));
+        if (mode == ConcurrencyMode.OPTIMISTIC) {
+            return globalIdOf(storage.pushBack(new VersionedEventList()));
+        }
+
+        return globalIdOf(storage.pushBack(new LockedEventList(new SequencedEventList(eventLog), lockWait)));
+    }
+
+    @Override
+    public int registerEventLists(int count, IntFunction<Event> initialEvent) {
+        ensureWritable();
+        var first = storage.reserve(count);
+        List<Event> events = new ArrayList<>(count);
+        var sequences = new long[count];
+        CompletableFuture<Void> durable;
+
+        try {
+            for (int i = 0; i < count; i++) {
+                events.add(initialEvent.apply(globalIdOf(first + i)));
+            }
+
+            durable = sequence(events, sequences);
+        } catch (RuntimeException e) {
+            for (int i = 0; i < count; i++) {
+                storage.put(first + i, mode == ConcurrencyMode.OPTIMISTIC
+                        ? new VersionedEventList() : new LockedEventList(new SequencedEventList(eventLog), lockWait));
+            }
+            throw e;
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (mode == ConcurrencyMode.OPTIMISTIC) {
+                var eventList = new VersionedEventList();
+                eventList.publish(eventList.append(events.get(i)), () -> null);
+                storage.put(first + i, eventList);
+            } else {
+                var history = new SequencedEventList(eventLog);
+                history.addSequence(sequences[i]);
+                storage.put(first + i, new LockedEventList(history, lockWait));
+            }
+        }
+
+        publishAll(sequences, events);
+        awaitDurable(durable);
+        return globalIdOf(first);
     }
 
+    @Override
     public void saveEvent(Event event) {
         var membershipId = event.getMembershipId();
 
-        if (membershipId > storage.getSize()) {
+        if (localIdOf(membershipId) > storage.getSize()) {
             throw new IllegalArgumentException("Membership id doesn't exist");
         }
 
-        storage.get(membershipId).transaction((history) -> history.add(event));
-        applyEvent(event);
+        ensureWritable();
+        var eventList = historyOf(membershipId);
+
+        if (eventList instanceof VersionedEventList) {
+            var versioned = (VersionedEventList) eventList;
+            publishInOrder(versioned, versioned.append(event), event);
+        } else {
+            awaitDurable(eventList.transaction((history) -> appendAndPublish(history, event)));
+        }
     }
 
-    public void applyEvent(Event event) {
-        subscribers.forEach((statSubscriber -> statSubscriber.process(event)));
+    @Override
+    public <S> boolean appendIf(int membershipId, Projection<S> projection, Function<S, Event> decide) {
+        ensureWritable();
+        var eventList = historyOf(membershipId);
+
+        if (eventList instanceof VersionedEventList) {
+            return appendOptimistically(membershipId, (VersionedEventList) eventList, projection, decide);
+        }
+
+        var durable = eventList.transaction((history) -> {
+            var event = decide.apply(project(membershipId, eventList, history, projection));
+
+            return event == null ? null : appendAndPublish(history, event);
+        });
+
+        if (durable == null) {
+            return false;
+        }
+
+        awaitDurable(durable);
+        return true;
+    }
+
+    @Override
+    public <S, C> boolean[] appendEach(List<C> commands, ToIntFunction<C> membershipOf, Projection<S> projection,
+                                       BiFunction<S, C, Event> decide) {
+        ensureWritable();
+        var accepted = new boolean[commands.size()];
+        Map<Integer, List<Integer>> groups = new TreeMap<>();
+
+        for (int i = 0; i < commands.size(); i++) {
+            groups.computeIfAbsent(membershipOf.applyAsInt(commands.get(i)), (id) -> new ArrayList<>()).add(i);
+        }
+
+        if (mode == ConcurrencyMode.OPTIMISTIC) {
+            groups.forEach((membershipId, indices) -> appendEachOptimistically(membershipId,
+                    (VersionedEventList) historyOf(membershipId), projection, commands, indices, decide, accepted));
+        } else {
+            appendGroups(groups, projection, commands, decide, accepted);
+        }
+
+        return accepted;
+    }
+
+    @Override
+    public void importEvents(List<Event> events) {
+        if (!subscribers.isEmpty()) {
+            throw new IllegalStateException("Events must be imported before subscribers are attached");
+        }
+
+        events.forEach(this::restoreEvent);
+
+        if (journal != null) {
+            journal.appendAll(events);
+        }
+
+        appendListeners.forEach(events::forEach);
+        dispatcher.resume(eventLog.size());
+    }
+
+    @Override
+    public void forEachEvent(Consumer<Event> consumer) {
+        var size = eventLog.size();
+        eventLog.awaitAppended(size);
+
+        for (long i = 0; i < size; i++) {
+            consumer.accept(eventLog.get(i));
+        }
+    }
+
+    @Override
+    public void addAppendListener(Consumer<Event> listener) {
+        appendListeners.add(listener);
     }
 
-    public void subscribe(StatSubscriber subscriber) {
-        for (int i = 0; i < storage.getSize(); i++) {
-            storage.get(i).applySubscriber(subscriber);
+    @Override
+    public <T> T getComponent(Class<T> type, Function<EventStore, T> factory) {
+        return type.cast(components.computeIfAbsent(type, (key) -> factory.apply(this)));
+    }
+
+    @Override
+    public void subscribe(StatSubscriber subscriber, long fromSequence, ForkJoinPool replayPool) {
+        var catchUp = new CatchUpSubscriber(subscriber, fromSequence);
+        subscribers.add(catchUp);
+        var liveFrom = eventLog.size();
+        eventLog.awaitAppended(liveFrom);
+        var from = Math.min(fromSequence, liveFrom);
+
+        if (subscriber instanceof ShardedSubscriber && replayPool.getParallelism() > 1
+                && liveFrom - from >= PARALLEL_REPLAY_THRESHOLD) {
+            replayInParallel((ShardedSubscriber<?>) subscriber, from, liveFrom, replayPool);
+        } else {
+            for (long i = from; i < liveFrom; i++) {
+                subscriber.process(i, eventLog.get(i));
+            }
         }
 
-        subscribers.add(subscriber);
+        catchUp.goLive(liveFrom);
     }
 
+    @Override
+    public int getSize() {
+        return storage.getSize();
+    }
+
+    @Override
+    public long getSequence() {
+        return eventLog.size();
+    }
+
+    @Override
+    public void awaitSequence(long sequence) {
+        dispatcher.awaitSequence(sequence);
+    }
+
+    @Override
     public <R> R transactionOn(int membershipId, Function<List<Event>, R> fun) {
-        return storage.get(membershipId).transaction(fun);
+        return historyOf(membershipId).transaction(fun);
+    }
+
+    @Override
+    public int compactHistory(int membershipId, long before) {
+        ensureWritable();
+        var eventList = historyOf(membershipId);
+
+        if (eventList == null) {
+            return 0;
+        }
+        if (eventList instanceof VersionedEventList) {
+            throw new UnsupportedOperationException("Optimistic histories are append-only");
+        }
+
+        var removed = new int[1];
+        var durable = eventList.transaction((history) -> {
+            var summary = VisitCompaction.summarize(membershipId, history, before);
+
+            if (summary == null) {
+                return DURABLE;
+            }
+
+            var recorded = record(summary);
+            removed[0] = compact(eventList, history, summary);
+            return recorded;
+        });
+
+        awaitDurable(durable);
+        return removed[0];
+    }
+
+    @Override
+    public <S, R> R transactionOn(int membershipId, Projection<S> projection, BiFunction<S, List<Event>, R> fun) {
+        var eventList = historyOf(membershipId);
+
+        return eventList.transaction((history) -> fun.apply(project(membershipId, eventList, history, projection), history));
+    }
+
+    @Override
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public int getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    @Override
+    public ConcurrencyMode getConcurrencyMode() {
+        return mode;
+    }
+
+    @Override
+    public void flush() {
+        if (journal != null) {
+            journal.force();
+        }
+    }
+
+    @Override
+    public void close() {
+        dispatcher.close();
+
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private EventHistory historyOf(int membershipId) {
+        return storage.get(localIdOf(membershipId));
+    }
+
+    private int localIdOf(int membershipId) {
+        if (membershipId < 0 || membershipId % partitions != partition) {
+            throw new IllegalArgumentException("Membership id doesn't exist");
+        }
+
+        return membershipId / partitions;
+    }
+
+    private int globalIdOf(int localId) {
+        return localId * partitions + partition;
+    }
+
+    private long append(List<Event> history, Event event) {
+        var sequence = eventLog.append(event);
+        ((SequencedEventList) history).addSequence(sequence);
+
+        return sequence;
+    }
+
+    // The journal is written in sequence order, and an event it rejects never reaches the log.
+    private CompletableFuture<Void> sequence(List<Event> events, long[] sequences) {
+        if (journal == null) {
+            for (int i = 0; i < sequences.length; i++) {
+                sequences[i] = eventLog.append(events.get(i));
+            }
+
+            return DURABLE;
+        }
+
+        synchronized (sequencer) {
+            var durable = journal.appendAllAsync(events);
+
+            for (int i = 0; i < sequences.length; i++) {
+                sequences[i] = eventLog.append(events.get(i));
+            }
+
+            return durable;
+        }
+    }
+
+    // Compaction summaries are journaled but never sequenced; recovery applies them to the member's history.
+    private CompletableFuture<Void> record(Event event) {
+        if (journal == null) {
+            return DURABLE;
+        }
+
+        synchronized (sequencer) {
+            return journal.appendAllAsync(List.of(event));
+        }
+    }
+
+    private int compact(EventHistory eventList, List<Event> history, VisitsCompacted summary) {
+        eventList.setSnapshot(null);
+
+        return VisitCompaction.apply(history, summary);
+    }
+
+    private CompletableFuture<Void> appendAndPublish(List<Event> history, Event event) {
+        var sequences = new long[1];
+        var durable = sequence(List.of(event), sequences);
+        ((SequencedEventList) history).addSequence(sequences[0]);
+        publish(sequences[0], event);
+
+        return durable;
+    }
+
+    private void awaitDurable(CompletableFuture<Void> durable) {
+        try {
+            GroupCommitWriter.awaitDurable(durable);
+        } catch (RuntimeException e) {
+            fail(e);
+            throw e;
+        }
+    }
+
+    private void fail(RuntimeException e) {
+        if (journalFailure == null) {
+            journalFailure = e;
+        }
+    }
+
+    private void ensureWritable() {
+        if (journalFailure != null) {
+            throw new IllegalStateException("Storage stopped accepting events after a journal failure", journalFailure);
+        }
+    }
+
+    private void publish(long sequence, Event event) {
+        appendListeners.forEach((listener) -> listener.accept(event));
+
+        dispatch(sequence, event);
+    }
+
+    private void publishAll(long[] sequences, List<Event> events) {
+        appendListeners.forEach(events::forEach);
+
+        for (int i = 0; i < sequences.length; i++) {
+            dispatch(sequences[i], events.get(i));
+        }
+    }
+
+    private void dispatch(long sequence, Event event) {
+        if ((sequence & DISPATCH_SAMPLE_MASK) != 0) {
+            dispatcher.dispatch(sequence, event, subscribers);
+            return;
+        }
+
+        var start = System.nanoTime();
+        dispatcher.dispatch(sequence, event, subscribers);
+        dispatchTime.recordSince(start);
+    }
+
+    private void restoreEvent(Event event) {
+        var membershipId = event.getMembershipId();
+
+        while (storage.getSize() <= localIdOf(membershipId)) {
+            registerEventList();
+        }
+
+        var eventList = historyOf(membershipId);
+
+        if (event instanceof VisitsCompacted) {
+            eventList.transaction((history) -> compact(eventList, history, (VisitsCompacted) event));
+        } else if (eventList instanceof VersionedEventList) {
+            var versioned = (VersionedEventList) eventList;
+            versioned.publish(versioned.append(event), () -> eventLog.append(event));
+        } else {
+            eventList.transaction((history) -> append(history, event));
+        }
+    }
+
+    private void publishInOrder(VersionedEventList eventList, int version, Event event) {
+        var durable = eventList.publish(version, () -> {
+            var sequences = new long[1];
+            CompletableFuture<Void> appended;
+
+            try {
+                appended = sequence(List.of(event), sequences);
+            } catch (RuntimeException e) {
+                fail(e);
+                throw e;
+            }
+
+            publish(sequences[0], event);
+            return appended;
+        });
+
+        awaitDurable(durable);
+    }
+
+    private <P extends StatSubscriber> void replayInParallel(ShardedSubscriber<P> subscriber, long from, long to,
+                                                            ForkJoinPool pool) {
+        var members = storage.getSize() * partitions;
+        var width = (members + 2 * pool.getParallelism() - 1) / (2 * pool.getParallelism());
+        var shards = (members + width - 1) / width;
+        var buckets = new ReplayBucket[shards];
+
+        for (int shard = 0; shard < shards; shard++) {
+            buckets[shard] = new ReplayBucket((int) ((to - from) / shards) + 1);
+        }
+        var ordered = subscriber.createOrderedShard();
+
+        for (long i = from; i < to; i++) {
+            var event = eventLog.get(i);
+            buckets[event.getMembershipId() / width].add(i, event);
+
+            if (ordered != null) {
+                ordered.process(i, event);
+            }
+        }
+
+        var partials = pool.submit(() -> IntStream.range(0, shards).parallel().mapToObj((shard) -> {
+            var partial = subscriber.createShard(shard * width, Math.min(members, (shard + 1) * width));
+            buckets[shard].replay(partial);
+            buckets[shard] = null;
+
+            return partial;
+        }).collect(Collectors.toList())).join();
+
+        partials.forEach(subscriber::merge);
+    }
+
+    private <S> boolean appendOptimistically(int membershipId, VersionedEventList eventList,
+                                             Projection<S> projection, Function<S, Event> decide) {
+        while (true) {
+            var version = eventList.getVersion();
+            var event = decide.apply(project(membershipId, eventList, eventList.view(version), projection));
+
+            if (event == null) {
+                return false;
+            }
+
+            if (eventList.compareAndAppend(version, event)) {
+                publishInOrder(eventList, version, event);
+                return true;
+            }
+        }
+    }
+
+    private <S, C> void appendGroups(Map<Integer, List<Integer>> groups, Projection<S> projection, List<C> commands,
+                                     BiFunction<S, C, Event> decide, boolean[] accepted) {
+        List<LockedEventList> locked = new ArrayList<>(groups.size());
+        List<List<Event>> histories = new ArrayList<>(groups.size());
+        List<Event> events = new ArrayList<>(commands.size());
+        var decided = new int[groups.size()];
+        var durable = DURABLE;
+
+        try {
+            for (var group : groups.entrySet()) {
+                var membershipId = group.getKey();
+                var eventList = (LockedEventList) historyOf(membershipId);
+                var history = eventList.lock();
+                locked.add(eventList);
+                histories.add(history);
+
+                var state = project(membershipId, eventList, history, projection);
+
+                for (var i : group.getValue()) {
+                    var event = decide.apply(state, commands.get(i));
+
+                    if (event != null) {
+                        projection.apply(state, event);
+                        events.add(event);
+                        accepted[i] = true;
+                    }
+                }
+
+                decided[histories.size() - 1] = events.size();
+            }
+
+            var sequences = new long[events.size()];
+
+            if (!events.isEmpty()) {
+                durable = sequence(events, sequences);
+            }
+
+            for (int group = 0, i = 0; group < histories.size(); group++) {
+                for (; i < decided[group]; i++) {
+                    ((SequencedEventList) histories.get(group)).addSequence(sequences[i]);
+                }
+            }
+
+            publishAll(sequences, events);
+        } finally {
+            locked.forEach(LockedEventList::unlock);
+        }
+
+        awaitDurable(durable);
+    }
+
+    private <S, C> void appendEachOptimistically(int membershipId, VersionedEventList eventList, Projection<S> projection,
+                                                 List<C> commands, List<Integer> indices,
+                                                 BiFunction<S, C, Event> decide, boolean[] accepted) {
+        var next = 0;
+
+        while (next < indices.size()) {
+            var version = eventList.getVersion();
+            var state = project(membershipId, eventList, eventList.view(version), projection);
+
+            for (; next < indices.size(); next++) {
+                var event = decide.apply(state, commands.get(indices.get(next)));
+
+                if (event == null) {
+                    continue;
+                }
+
+                if (!eventList.compareAndAppend(version, event)) {
+                    break;
+                }
+
+                publishInOrder(eventList, version, event);
+                projection.apply(state, event);
+                accepted[indices.get(next)] = true;
+                version++;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <S> S project(int membershipId, EventHistory eventList, List<Event> history, Projection<S> projection) {
+        var snapshot = eventList.getSnapshot();
+        var size = history.size();
+        S state;
+        int from;
+
+        if (snapshot != null && snapshot.getOwner() == projection && snapshot.getEventIndex() <= size) {
+            state = projection.copy((S) snapshot.getState());
+            from = snapshot.getEventIndex();
+        } else {
+            state = projection.initial(membershipId);
+            from = 0;
+        }
+
+        for (int i = from; i < size; i++) {
+            projection.apply(state, history.get(i));
+        }
+
+        replayLength.record(size - from);
+
+        if (size - from >= snapshotInterval) {
+            eventList.setSnapshot(new Snapshot<>(projection, projection.copy(state), size));
+        }
+
+        return state;
     }
 }
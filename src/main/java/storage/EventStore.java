@@ -0,0 +1,79 @@
+package storage;
+
+import events.Event;
+import utils.Metrics;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+public interface EventStore extends Closeable {
+    int registerEventList();
+
+    int registerEventLists(int count, IntFunction<Event> initialEvent);
+
+    void saveEvent(Event event);
+
+    <S> boolean appendIf(int membershipId, Projection<S> projection, Function<S, Event> decide);
+
+    <S, C> boolean[] appendEach(List<C> commands, ToIntFunction<C> membershipOf, Projection<S> projection,
+                                BiFunction<S, C, Event> decide);
+
+    void importEvents(List<Event> events);
+
+    void forEachEvent(Consumer<Event> consumer);
+
+    void addAppendListener(Consumer<Event> listener);
+
+    <T> T getComponent(Class<T> type, Function<EventStore, T> factory);
+
+    default void subscribe(StatSubscriber subscriber) {
+        subscribe(subscriber, 0);
+    }
+
+    default void subscribe(StatSubscriber subscriber, long fromSequence) {
+        subscribe(subscriber, fromSequence, ForkJoinPool.commonPool());
+    }
+
+    void subscribe(StatSubscriber subscriber, long fromSequence, ForkJoinPool replayPool);
+
+    int getSize();
+
+    long getSequence();
+
+    void awaitSequence(long sequence);
+
+    <R> R transactionOn(int membershipId, Function<List<Event>, R> fun);
+
+    <S, R> R transactionOn(int membershipId, Projection<S> projection, BiFunction<S, List<Event>, R> fun);
+
+    int compactHistory(int membershipId, long before);
+
+    default int getPartitions() {
+        return 1;
+    }
+
+    default EventStore getPartition(int partition) {
+        if (partition != 0) {
+            throw new IndexOutOfBoundsException("Partition " + partition + " out of range");
+        }
+
+        return this;
+    }
+
+    Metrics getMetrics();
+
+    int getSnapshotInterval();
+
+    EventStorage.ConcurrencyMode getConcurrencyMode();
+
+    void flush();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,202 @@
+package storage;
+
+import events.Event;
+import utils.Metrics;
+import utils.ValueRecorder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class GroupCommitWriter implements EventLog {
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final Duration DEFAULT_MAX_WAIT = Duration.ofNanos(200_000);
+
+    private static class Request {
+        final Event event;
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<Void> durable = new CompletableFuture<>();
+
+        Request(Event event) {
+            this.event = event;
+        }
+    }
+
+    private final EventLog log;
+    private final int batchSize;
+    private final long maxWaitNanos;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Metrics metrics = new Metrics();
+    private final ValueRecorder batchSizes = metrics.recorder("journal.batchSize");
+    private final ValueRecorder fsyncTime = metrics.recorder("journal.fsyncNanos");
+    private final ValueRecorder commitLatency = metrics.recorder("journal.commitLatencyNanos");
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    public GroupCommitWriter(EventLog log) {
+        this(log, DEFAULT_BATCH_SIZE, DEFAULT_MAX_WAIT);
+    }
+
+    public GroupCommitWriter(EventLog log, int batchSize, Duration maxWait) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+
+        this.log = log;
+        this.batchSize = batchSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.flusher = new Thread(this::flushLoop, "group-commit-flusher");
+        this.flusher.setDaemon(true);
+    }
+
+    @Override
+    public void recover(Consumer<Event> consumer) {
+        log.recover(consumer);
+
+        if (!flusher.isAlive()) {
+            flusher.start();
+        }
+    }
+
+    @Override
+    public void append(Event event) {
+        awaitDurable(appendAsync(event));
+    }
+
+    @Override
+    public CompletableFuture<Void> appendAsync(Event event) {
+        if (!running) {
+            throw new IllegalStateException("Writer is closed");
+        }
+
+        var request = new Request(event);
+        queue.add(request);
+        return request.durable;
+    }
+
+    @Override
+    public void appendAll(List<Event> events) {
+        awaitDurable(appendAllAsync(events));
+    }
+
+    @Override
+    public CompletableFuture<Void> appendAllAsync(List<Event> events) {
+        if (!running) {
+            throw new IllegalStateException("Writer is closed");
+        }
+
+        List<Request> requests = new ArrayList<>(events.size());
+        events.forEach((event) -> requests.add(new Request(event)));
+        queue.addAll(requests);
+
+        return requests.size() == 1 ? requests.get(0).durable
+                : CompletableFuture.allOf(requests.stream().map((request) -> request.durable).toArray(CompletableFuture[]::new));
+    }
+
+    @Override
+    public void force() {
+        log.force();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        queue.forEach((request) -> request.durable.completeExceptionally(new IllegalStateException("Writer is closed")));
+        log.close();
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    static void awaitDurable(CompletableFuture<Void> durable) {
+        try {
+            durable.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void flushLoop() {
+        List<Request> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void collect(List<Request> batch) throws InterruptedException {
+        var first = queue.poll(10, TimeUnit.MILLISECONDS);
+
+        if (first == null) {
+            return;
+        }
+
+        batch.add(first);
+        queue.drainTo(batch, batchSize - batch.size());
+        var deadline = System.nanoTime() + maxWaitNanos;
+
+        while (batch.size() < batchSize) {
+            var remaining = deadline - System.nanoTime();
+
+            if (remaining <= 0) {
+                break;
+            }
+
+            var next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+
+            if (next == null) {
+                break;
+            }
+
+            batch.add(next);
+            queue.drainTo(batch, batchSize - batch.size());
+        }
+    }
+
+    private void commit(List<Request> batch) {
+        try {
+            batch.forEach((request) -> log.append(request.event));
+            var fsyncStart = System.nanoTime();
+            log.force();
+            fsyncTime.recordSince(fsyncStart);
+        } catch (RuntimeException e) {
+            batch.forEach((request) -> request.durable.completeExceptionally(e));
+            return;
+        }
+
+        var committedAt = System.nanoTime();
+        batchSizes.record(batch.size());
+
+        batch.forEach((request) -> {
+            commitLatency.record(committedAt - request.enqueuedAt);
+            request.durable.complete(null);
+        });
+    }
+}
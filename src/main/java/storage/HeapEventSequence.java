@@ -0,0 +1,56 @@
+package storage;
+
+import events.Event;
+import utils.ChunkedDynamicArray;
+import utils.DynamicArray;
+
+public class HeapEventSequence implements EventSequence {
+    private final DynamicArray<Event> events = new ChunkedDynamicArray<>();
+    private volatile OffHeapEventColumns evicted;
+
+    @Override
+    public long append(Event event) {
+        return events.pushBack(event);
+    }
+
+    @Override
+    public Event get(long sequence) {
+        var row = Math.toIntExact(sequence);
+        var event = events.get(row);
+
+        return event != null ? event : evicted.get(row);
+    }
+
+    @Override
+    public long size() {
+        return events.getSize();
+    }
+
+    @Override
+    public void awaitAppended(long sequence) {
+    }
+
+    // Replays still need compacted events, so they move to columns that allocate whole 64k-row chunks.
+    @Override
+    public void evict(long sequence) {
+        var row = Math.toIntExact(sequence);
+        var event = events.get(row);
+
+        if (event != null) {
+            evicted().put(row, event);
+            events.put(row, null);
+        }
+    }
+
+    private OffHeapEventColumns evicted() {
+        if (evicted == null) {
+            synchronized (this) {
+                if (evicted == null) {
+                    evicted = new OffHeapEventColumns();
+                }
+            }
+        }
+
+        return evicted;
+    }
+}
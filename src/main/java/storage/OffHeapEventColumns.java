@@ -0,0 +1,99 @@
+package storage;
+
+import events.Event;
+import events.EventCodec;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class OffHeapEventColumns implements EventListFactory {
+    private static final int CHUNK_SHIFT = 16;
+
+    public static final int CHUNK_ROWS = 1 << CHUNK_SHIFT;
+
+    private static final int CHUNK_MASK = CHUNK_ROWS - 1;
+    private static final int MAX_CHUNKS = 1 << (Integer.SIZE - 1 - CHUNK_SHIFT);
+
+    private static final int TYPES = 0;
+    private static final int IDS = TYPES + CHUNK_ROWS * Byte.BYTES;
+    private static final int FIRSTS = IDS + CHUNK_ROWS * Integer.BYTES;
+    private static final int SECONDS = FIRSTS + CHUNK_ROWS * Long.BYTES;
+    private static final int CHUNK_BYTES = CHUNK_ROWS * EventCodec.RECORD_SIZE;
+
+    private final AtomicReferenceArray<ByteBuffer> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+    private final AtomicInteger rows = new AtomicInteger(0);
+    private final AtomicBoolean bound = new AtomicBoolean(false);
+
+    @Override
+    public EventSequence createSequence() {
+        if (!bound.compareAndSet(false, true)) {
+            throw new IllegalStateException("Columns already back an event sequence");
+        }
+
+        return new OffHeapEventSequence(this);
+    }
+
+    public int append(Event event) {
+        var row = rows.getAndIncrement();
+
+        if (row < 0) {
+            throw new IllegalStateException("Off-heap event store is full");
+        }
+
+        put(row, event);
+
+        return row;
+    }
+
+    public void put(int row, Event event) {
+        var chunk = chunk(row >>> CHUNK_SHIFT);
+        var offset = row & CHUNK_MASK;
+        chunk.put(TYPES + offset, EventCodec.typeOf(event));
+        chunk.putInt(IDS + offset * Integer.BYTES, event.getMembershipId());
+        chunk.putLong(FIRSTS + offset * Long.BYTES, EventCodec.firstOf(event));
+        chunk.putLong(SECONDS + offset * Long.BYTES, EventCodec.secondOf(event));
+    }
+
+    public Event get(int row) {
+        var chunk = chunks.get(row >>> CHUNK_SHIFT);
+        var offset = row & CHUNK_MASK;
+
+        return EventCodec.create(chunk.get(TYPES + offset),
+                chunk.getInt(IDS + offset * Integer.BYTES),
+                chunk.getLong(FIRSTS + offset * Long.BYTES),
+                chunk.getLong(SECONDS + offset * Long.BYTES));
+    }
+
+    public int membershipIdAt(int row) {
+        return chunks.get(row >>> CHUNK_SHIFT).getInt(IDS + (row & CHUNK_MASK) * Integer.BYTES);
+    }
+
+    public int getRows() {
+        return rows.get();
+    }
+
+    public long offHeapBytes() {
+        long bytes = 0;
+
+        for (int i = 0; i < MAX_CHUNKS; i++) {
+            if (chunks.get(i) != null) {
+                bytes += CHUNK_BYTES;
+            }
+        }
+
+        return bytes;
+    }
+
+    private ByteBuffer chunk(int index) {
+        var chunk = chunks.get(index);
+
+        if (chunk == null) {
+            chunks.compareAndSet(index, null, ByteBuffer.allocateDirect(CHUNK_BYTES));
+            chunk = chunks.get(index);
+        }
+
+        return chunk;
+    }
+}
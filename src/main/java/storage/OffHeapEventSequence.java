@@ -0,0 +1,51 @@
+package storage;
+
+import events.Event;
+import utils.SequenceWatermark;
+
+public class OffHeapEventSequence implements EventSequence {
+    private final OffHeapEventColumns columns;
+    private final SequenceWatermark appended = new SequenceWatermark(0);
+
+    public OffHeapEventSequence() {
+        this(new OffHeapEventColumns());
+    }
+
+    OffHeapEventSequence(OffHeapEventColumns columns) {
+        this.columns = columns;
+    }
+
+    @Override
+    public long append(Event event) {
+        var row = columns.append(event);
+        appended.mark(row);
+
+        return row;
+    }
+
+    @Override
+    public Event get(long sequence) {
+        return columns.get(Math.toIntExact(sequence));
+    }
+
+    @Override
+    public int membershipIdAt(long sequence) {
+        return columns.membershipIdAt(Math.toIntExact(sequence));
+    }
+
+    @Override
+    public long size() {
+        return columns.getRows();
+    }
+
+    @Override
+    public void awaitAppended(long sequence) {
+        while (appended.get() < sequence) {
+            Thread.onSpinWait();
+        }
+    }
+
+    public long offHeapBytes() {
+        return columns.offHeapBytes();
+    }
+}
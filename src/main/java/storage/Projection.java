@@ -0,0 +1,11 @@
+package storage;
+
+import events.Event;
+
+public interface Projection<S> {
+    S initial(int membershipId);
+
+    S copy(S state);
+
+    void apply(S state, Event event);
+}
@@ -0,0 +1,104 @@
+package storage;
+
+import events.Event;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+
+class SequencedEventList extends AbstractList<Event> {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final EventSequence sequence;
+    private int[] rows = new int[INITIAL_CAPACITY];
+    private Event[] detached;
+    private int size = 0;
+
+    SequencedEventList(EventSequence sequence) {
+        this.sequence = sequence;
+    }
+
+    void addSequence(long sequenceNumber) {
+        ensureCapacity();
+        rows[size++] = Math.toIntExact(sequenceNumber);
+        modCount++;
+    }
+
+    @Override
+    public Event get(int index) {
+        Objects.checkIndex(index, size);
+
+        if (detached != null && detached[index] != null) {
+            return detached[index];
+        }
+
+        return sequence.get(rows[index]);
+    }
+
+    @Override
+    public void add(int index, Event event) {
+        Objects.checkIndex(index, size + 1);
+        ensureCapacity();
+
+        if (detached == null) {
+            detached = new Event[rows.length];
+        }
+
+        System.arraycopy(rows, index, rows, index + 1, size - index);
+        System.arraycopy(detached, index, detached, index + 1, size - index);
+        rows[index] = -1;
+        detached[index] = Objects.requireNonNull(event);
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public Event remove(int index) {
+        var event = get(index);
+        removeRange(index, index + 1);
+
+        return event;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        for (int i = fromIndex; i < toIndex; i++) {
+            if (rows[i] >= 0) {
+                sequence.evict(rows[i]);
+            }
+        }
+
+        System.arraycopy(rows, toIndex, rows, fromIndex, size - toIndex);
+
+        if (detached != null) {
+            System.arraycopy(detached, toIndex, detached, fromIndex, size - toIndex);
+            Arrays.fill(detached, size - (toIndex - fromIndex), size, null);
+        }
+
+        size -= toIndex - fromIndex;
+        modCount++;
+
+        if (size < rows.length / 4 && rows.length > INITIAL_CAPACITY) {
+            resize(Math.max(INITIAL_CAPACITY, 2 * size));
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private void ensureCapacity() {
+        if (size == rows.length) {
+            resize(2 * size);
+        }
+    }
+
+    private void resize(int capacity) {
+        rows = Arrays.copyOf(rows, capacity);
+
+        if (detached != null) {
+            detached = Arrays.copyOf(detached, capacity);
+        }
+    }
+}
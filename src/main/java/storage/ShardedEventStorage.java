@@ -0,0 +1,340 @@
+package storage;
+
+import events.Event;
+import storage.EventStorage.ConcurrencyMode;
+import utils.Metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+public class ShardedEventStorage implements EventStore {
+    private static class PartitionSubscriber implements StatSubscriber {
+        private final StatSubscriber subscriber;
+        private final int partition, partitions;
+
+        PartitionSubscriber(StatSubscriber subscriber, int partition, int partitions) {
+            this.subscriber = subscriber;
+            this.partition = partition;
+            this.partitions = partitions;
+        }
+
+        @Override
+        public void process(Event event) {
+            subscriber.process(event);
+        }
+
+        @Override
+        public void process(long sequence, Event event) {
+            subscriber.process(sequence * partitions + partition, event);
+        }
+    }
+
+    private final EventStorage[] shards;
+    private final int snapshotInterval;
+    private final ConcurrencyMode mode;
+    private final Object registration = new Object();
+    private final Map<Class<?>, Object> components = new ConcurrentHashMap<>();
+    private final Metrics metrics = new Metrics();
+    private volatile int size;
+
+    public ShardedEventStorage(int partitions) {
+        this(partitions, ConcurrencyMode.LOCKED);
+    }
+
+    public ShardedEventStorage(int partitions, ConcurrencyMode mode) {
+        this(partitions, EventStorage.DEFAULT_SNAPSHOT_INTERVAL, mode, (partition) -> null, (partition) -> new AsyncEventDispatcher(1));
+    }
+
+    public ShardedEventStorage(int partitions, int snapshotInterval, ConcurrencyMode mode,
+                               IntFunction<EventLog> journals, IntFunction<EventDispatcher> dispatchers) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Partition count must be positive");
+        }
+
+        this.shards = new EventStorage[partitions];
+        this.snapshotInterval = snapshotInterval;
+        this.mode = mode;
+
+        for (int i = 0; i < partitions; i++) {
+            shards[i] = EventStorage.builder().snapshotInterval(snapshotInterval).journal(journals.apply(i)).mode(mode)
+                    .dispatcher(dispatchers.apply(i)).partition(i, partitions).build();
+            metrics.include(shards[i].getMetrics());
+        }
+
+        alignRecoveredShards();
+    }
+
+    @Override
+    public int getPartitions() {
+        return shards.length;
+    }
+
+    @Override
+    public EventStorage getPartition(int partition) {
+        return shards[partition];
+    }
+
+    @Override
+    public int registerEventList() {
+        synchronized (registration) {
+            var membershipId = shards[size % shards.length].registerEventList();
+            size = membershipId + 1;
+            return membershipId;
+        }
+    }
+
+    @Override
+    public int registerEventLists(int count, IntFunction<Event> initialEvent) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Reservation must be positive");
+        }
+
+        synchronized (registration) {
+            var first = size;
+
+            for (int partition = 0; partition < shards.length; partition++) {
+                var offset = Math.floorMod(partition - first, shards.length);
+
+                if (offset < count) {
+                    shards[partition].registerEventLists((count - offset - 1) / shards.length + 1, initialEvent);
+                }
+            }
+
+            size = first + count;
+            return first;
+        }
+    }
+
+    @Override
+    public void saveEvent(Event event) {
+        shardOf(event.getMembershipId()).saveEvent(event);
+    }
+
+    @Override
+    public <S> boolean appendIf(int membershipId, Projection<S> projection, Function<S, Event> decide) {
+        return shardOf(membershipId).appendIf(membershipId, projection, decide);
+    }
+
+    @Override
+    public <S, C> boolean[] appendEach(List<C> commands, ToIntFunction<C> membershipOf, Projection<S> projection,
+                                       BiFunction<S, C, Event> decide) {
+        List<List<Integer>> byShard = new ArrayList<>(shards.length);
+
+        for (int i = 0; i < shards.length; i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (int i = 0; i < commands.size(); i++) {
+            byShard.get(partitionOf(membershipOf.applyAsInt(commands.get(i)))).add(i);
+        }
+
+        var accepted = new boolean[commands.size()];
+
+        for (int partition = 0; partition < shards.length; partition++) {
+            var indices = byShard.get(partition);
+
+            if (indices.isEmpty()) {
+                continue;
+            }
+
+            List<C> shardCommands = new ArrayList<>(indices.size());
+            indices.forEach((i) -> shardCommands.add(commands.get(i)));
+            var shardAccepted = shards[partition].appendEach(shardCommands, membershipOf, projection, decide);
+
+            for (int i = 0; i < shardAccepted.length; i++) {
+                accepted[indices.get(i)] = shardAccepted[i];
+            }
+        }
+
+        return accepted;
+    }
+
+    @Override
+    public void importEvents(List<Event> events) {
+        var byShard = groupByShard(events);
+
+        synchronized (registration) {
+            for (int partition = 0; partition < shards.length; partition++) {
+                if (!byShard.get(partition).isEmpty()) {
+                    shards[partition].importEvents(byShard.get(partition));
+                }
+            }
+
+            alignRecoveredShards();
+        }
+    }
+
+    @Override
+    public void forEachEvent(Consumer<Event> consumer) {
+        for (var shard : shards) {
+            shard.forEachEvent(consumer);
+        }
+    }
+
+    @Override
+    public void addAppendListener(Consumer<Event> listener) {
+        for (var shard : shards) {
+            shard.addAppendListener(listener);
+        }
+    }
+
+    @Override
+    public <T> T getComponent(Class<T> type, Function<EventStore, T> factory) {
+        return type.cast(components.computeIfAbsent(type, (key) -> factory.apply(this)));
+    }
+
+    @Override
+    public void subscribe(StatSubscriber subscriber, long fromSequence, ForkJoinPool replayPool) {
+        if (fromSequence != 0) {
+            throw new IllegalArgumentException("Sharded storage resumes from one sequence per partition");
+        }
+
+        subscribe(subscriber, new long[shards.length], replayPool);
+    }
+
+    public void subscribe(StatSubscriber subscriber, long[] fromSequences, ForkJoinPool replayPool) {
+        if (fromSequences.length != shards.length) {
+            throw new IllegalArgumentException("Expected one sequence per partition");
+        }
+
+        for (int partition = 0; partition < shards.length; partition++) {
+            shards[partition].subscribe(new PartitionSubscriber(subscriber, partition, shards.length),
+                    fromSequences[partition], replayPool);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public long getSequence() {
+        long sequence = 0;
+
+        for (var shard : shards) {
+            sequence += shard.getSequence();
+        }
+
+        return sequence;
+    }
+
+    public long[] getSequences() {
+        var sequences = new long[shards.length];
+
+        for (int partition = 0; partition < shards.length; partition++) {
+            sequences[partition] = shards[partition].getSequence();
+        }
+
+        return sequences;
+    }
+
+    @Override
+    public void awaitSequence(long sequence) {
+        while (getSequence() < sequence) {
+            Thread.onSpinWait();
+        }
+
+        awaitDispatched();
+    }
+
+    public void awaitDispatched() {
+        for (var shard : shards) {
+            shard.awaitSequence(shard.getSequence());
+        }
+    }
+
+    @Override
+    public <R> R transactionOn(int membershipId, Function<List<Event>, R> fun) {
+        return shardOf(membershipId).transactionOn(membershipId, fun);
+    }
+
+    @Override
+    public <S, R> R transactionOn(int membershipId, Projection<S> projection, BiFunction<S, List<Event>, R> fun) {
+        return shardOf(membershipId).transactionOn(membershipId, projection, fun);
+    }
+
+    @Override
+    public int compactHistory(int membershipId, long before) {
+        return shardOf(membershipId).compactHistory(membershipId, before);
+    }
+
+    @Override
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public int getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    @Override
+    public ConcurrencyMode getConcurrencyMode() {
+        return mode;
+    }
+
+    @Override
+    public void flush() {
+        for (var shard : shards) {
+            shard.flush();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (var shard : shards) {
+            shard.close();
+        }
+    }
+
+    private EventStorage shardOf(int membershipId) {
+        return shards[partitionOf(membershipId)];
+    }
+
+    private int partitionOf(int membershipId) {
+        if (membershipId < 0 || membershipId >= size) {
+            throw new IllegalArgumentException("Membership id doesn't exist");
+        }
+
+        return membershipId % shards.length;
+    }
+
+    private List<List<Event>> groupByShard(List<Event> events) {
+        List<List<Event>> byShard = new ArrayList<>(shards.length);
+
+        for (int i = 0; i < shards.length; i++) {
+            byShard.add(new ArrayList<>());
+        }
+
+        events.forEach((event) -> byShard.get(Math.floorMod(event.getMembershipId(), shards.length)).add(event));
+        return byShard;
+    }
+
+    private void alignRecoveredShards() {
+        var recovered = 0;
+
+        for (int partition = 0; partition < shards.length; partition++) {
+            var shardSize = shards[partition].getSize();
+
+            if (shardSize > 0) {
+                recovered = Math.max(recovered, (shardSize - 1) * shards.length + partition + 1);
+            }
+        }
+
+        for (int partition = 0; partition < shards.length; partition++) {
+            while (shards[partition].getSize() * shards.length + partition < recovered) {
+                shards[partition].registerEventList();
+            }
+        }
+
+        size = recovered;
+    }
+}
@@ -0,0 +1,12 @@
+package storage;
+
+public interface ShardedSubscriber<P extends StatSubscriber> extends StatSubscriber {
+    P createShard(int fromMembershipId, int toMembershipId);
+
+    void merge(P shard);
+
+    // Receives every replayed event in log order, for state that cannot be merged from shards.
+    default StatSubscriber createOrderedShard() {
+        return null;
+    }
+}
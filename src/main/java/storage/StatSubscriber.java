@@ -4,4 +4,8 @@ import events.Event;
 
 public interface StatSubscriber {
     void process(Event event);
+
+    default void process(long sequence, Event event) {
+        process(event);
+    }
 }
@@ -0,0 +1,92 @@
+package storage;
+
+import events.Event;
+import events.MemberEntered;
+import events.MemberLeft;
+import events.VisitsCompacted;
+
+import java.util.List;
+
+final class VisitCompaction {
+    private VisitCompaction() {
+    }
+
+    static VisitsCompacted summarize(int membershipId, List<Event> history, long before) {
+        var cutoff = cutoff(history, before);
+        long attendance = 0;
+        var visits = 0;
+
+        for (var event : history.subList(0, cutoff)) {
+            if (event instanceof MemberEntered) {
+                attendance++;
+                visits++;
+            } else if (event instanceof MemberLeft) {
+                visits++;
+            } else if (event instanceof VisitsCompacted) {
+                attendance += ((VisitsCompacted) event).getAttendanceCount();
+            }
+        }
+
+        return visits == 0 ? null : new VisitsCompacted(membershipId, attendance, before);
+    }
+
+    // Replays the same cutoff on recovery, so the journaled summary rebuilds the compacted history.
+    static int apply(List<Event> history, VisitsCompacted summary) {
+        var cutoff = cutoff(history, summary.getCompactedBefore());
+        var removed = 0;
+
+        for (int end = cutoff; end > 0; ) {
+            if (!isVisit(history.get(end - 1))) {
+                end--;
+                continue;
+            }
+
+            var start = end - 1;
+
+            while (start > 0 && isVisit(history.get(start - 1))) {
+                start--;
+            }
+
+            history.subList(start, end).clear();
+            removed += end - start;
+            end = start;
+        }
+
+        if (summary.getAttendanceCount() > 0) {
+            history.add(cutoff - removed, summary);
+            removed--;
+        }
+
+        return removed;
+    }
+
+    private static int cutoff(List<Event> history, long before) {
+        var cutoff = 0;
+        var entered = false;
+
+        for (int i = 0; i < history.size(); i++) {
+            var event = history.get(i);
+
+            if (event instanceof MemberEntered) {
+                if (((MemberEntered) event).getEnterTime() >= before) {
+                    break;
+                }
+                entered = true;
+            } else if (event instanceof MemberLeft) {
+                if (((MemberLeft) event).getExitTime() >= before) {
+                    break;
+                }
+                entered = false;
+                cutoff = i + 1;
+            } else if (!entered) {
+                cutoff = i + 1;
+            }
+        }
+
+        return cutoff;
+    }
+
+    private static boolean isVisit(Event event) {
+        return event instanceof MemberEntered || event instanceof MemberLeft || event instanceof VisitsCompacted;
+    }
+}
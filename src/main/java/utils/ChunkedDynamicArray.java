@@ -0,0 +1,130 @@
+package utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class ChunkedDynamicArray<E> implements DynamicArray<E> {
+    private static final Object NULL = new Object();
+
+    private static class Reservation {
+        final int count;
+
+        Reservation(int count) {
+            this.count = count;
+        }
+    }
+
+    private static final int FIRST_CHUNK_SHIFT = 4;
+    private static final int CHUNK_COUNT = Integer.SIZE - FIRST_CHUNK_SHIFT;
+
+    private final AtomicReferenceArray<AtomicReferenceArray<Object>> chunks = new AtomicReferenceArray<>(CHUNK_COUNT);
+    private final AtomicInteger curSize = new AtomicInteger(0);
+
+    @Override
+    public E get(int index) {
+        if (index >= getSize()) {
+            throw new IllegalArgumentException("Array index out of range");
+        }
+
+        return getPublished(index);
+    }
+
+    E getPublished(int index) {
+        var chunk = chunks.get(Chunks.chunkOf(index, FIRST_CHUNK_SHIFT));
+
+        return chunk == null ? null : unwrap(chunk.get(Chunks.offsetOf(index, FIRST_CHUNK_SHIFT)));
+    }
+
+    @Override
+    public void put(int index, E element) {
+        if (index >= getSize()) {
+            throw new IllegalArgumentException("Array index out of range");
+        }
+
+        slots(index).set(Chunks.offsetOf(index, FIRST_CHUNK_SHIFT), wrap(element));
+    }
+
+    @Override
+    public int pushBack(E element) {
+        var wrapped = wrap(element);
+
+        while (true) {
+            var size = getSize();
+
+            if (slots(size).compareAndSet(Chunks.offsetOf(size, FIRST_CHUNK_SHIFT), null, wrapped)) {
+                curSize.compareAndSet(size, size + 1);
+                return size;
+            }
+
+            advance(size);
+        }
+    }
+
+    public int reserve(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Reservation must be positive");
+        }
+
+        var reservation = new Reservation(count);
+
+        while (true) {
+            var size = getSize();
+
+            if (slots(size).compareAndSet(Chunks.offsetOf(size, FIRST_CHUNK_SHIFT), null, reservation)) {
+                curSize.compareAndSet(size, size + count);
+
+                for (int chunk = Chunks.chunkOf(size, FIRST_CHUNK_SHIFT) + 1;
+                     chunk <= Chunks.chunkOf(size + count - 1, FIRST_CHUNK_SHIFT); chunk++) {
+                    chunks.compareAndSet(chunk, null, new AtomicReferenceArray<>(Chunks.chunkSize(chunk, FIRST_CHUNK_SHIFT)));
+                }
+
+                return size;
+            }
+
+            advance(size);
+        }
+    }
+
+    public boolean compareAndPushBack(int expectedSize, E element) {
+        if (slots(expectedSize).compareAndSet(Chunks.offsetOf(expectedSize, FIRST_CHUNK_SHIFT), null, wrap(element))) {
+            curSize.compareAndSet(expectedSize, expectedSize + 1);
+            return true;
+        }
+
+        advance(expectedSize);
+        return false;
+    }
+
+    @Override
+    public int getSize() {
+        return curSize.get();
+    }
+
+    private void advance(int size) {
+        var slot = slots(size).get(Chunks.offsetOf(size, FIRST_CHUNK_SHIFT));
+        var step = slot instanceof Reservation ? ((Reservation) slot).count : 1;
+
+        curSize.compareAndSet(size, size + step);
+    }
+
+    private AtomicReferenceArray<Object> slots(int index) {
+        var chunkIndex = Chunks.chunkOf(index, FIRST_CHUNK_SHIFT);
+        var chunk = chunks.get(chunkIndex);
+
+        if (chunk == null) {
+            chunks.compareAndSet(chunkIndex, null, new AtomicReferenceArray<>(Chunks.chunkSize(chunkIndex, FIRST_CHUNK_SHIFT)));
+            chunk = chunks.get(chunkIndex);
+        }
+
+        return chunk;
+    }
+
+    private static Object wrap(Object element) {
+        return element == null ? NULL : element;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E unwrap(Object value) {
+        return value == NULL || value instanceof Reservation ? null : (E) value;
+    }
+}
@@ -0,0 +1,26 @@
+package utils;
+
+final class Chunks {
+    private Chunks() {
+    }
+
+    static int chunkOf(int index, int firstChunkShift) {
+        return highestBit(index, firstChunkShift) - firstChunkShift;
+    }
+
+    static int offsetOf(int index, int firstChunkShift) {
+        return (int) (biased(index, firstChunkShift) - (1L << highestBit(index, firstChunkShift)));
+    }
+
+    static int chunkSize(int chunk, int firstChunkShift) {
+        return 1 << (chunk + firstChunkShift);
+    }
+
+    private static int highestBit(int index, int firstChunkShift) {
+        return Long.SIZE - 1 - Long.numberOfLeadingZeros(biased(index, firstChunkShift));
+    }
+
+    private static long biased(int index, int firstChunkShift) {
+        return (long) index + (1 << firstChunkShift);
+    }
+}
@@ -0,0 +1,39 @@
+package utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class ConcurrentFenwickTree {
+    private final AtomicLongArray tree;
+
+    public ConcurrentFenwickTree(int size) {
+        this.tree = new AtomicLongArray(size + 1);
+    }
+
+    public int size() {
+        return tree.length() - 1;
+    }
+
+    public void add(int index, long delta) {
+        if (index < 0 || index >= size()) {
+            throw new IllegalArgumentException("Index out of range");
+        }
+
+        for (int i = index + 1; i < tree.length(); i += i & -i) {
+            tree.getAndAdd(i, delta);
+        }
+    }
+
+    public long prefixSum(int to) {
+        long sum = 0;
+
+        for (int i = Math.min(Math.max(to, 0), size()); i > 0; i -= i & -i) {
+            sum += tree.get(i);
+        }
+
+        return sum;
+    }
+
+    public long rangeSum(int from, int to) {
+        return from >= to ? 0 : prefixSum(to) - prefixSum(from);
+    }
+}
@@ -0,0 +1,14 @@
+package utils;
+
+import events.Event;
+
+import java.util.List;
+import java.util.function.Function;
+
+public interface EventHistory {
+    <R> R transaction(Function<List<Event>, R> fun);
+
+    Snapshot<?> getSnapshot();
+
+    void setSnapshot(Snapshot<?> snapshot);
+}
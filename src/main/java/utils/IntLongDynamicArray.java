@@ -0,0 +1,53 @@
+package utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class IntLongDynamicArray {
+    public static final long EMPTY = Long.MIN_VALUE;
+
+    private static final int FIRST_CHUNK_SHIFT = 6;
+    private static final int CHUNK_COUNT = Integer.SIZE - FIRST_CHUNK_SHIFT;
+
+    private final AtomicReferenceArray<AtomicLongArray> chunks = new AtomicReferenceArray<>(CHUNK_COUNT);
+
+    public long get(int index) {
+        var chunk = chunks.get(Chunks.chunkOf(index, FIRST_CHUNK_SHIFT));
+
+        return chunk == null ? EMPTY : chunk.get(Chunks.offsetOf(index, FIRST_CHUNK_SHIFT));
+    }
+
+    public void put(int index, long value) {
+        chunk(index).set(Chunks.offsetOf(index, FIRST_CHUNK_SHIFT), value);
+    }
+
+    public long getAndSet(int index, long value) {
+        return chunk(index).getAndSet(Chunks.offsetOf(index, FIRST_CHUNK_SHIFT), value);
+    }
+
+    public boolean compareAndSet(int index, long expected, long value) {
+        return chunk(index).compareAndSet(Chunks.offsetOf(index, FIRST_CHUNK_SHIFT), expected, value);
+    }
+
+    private AtomicLongArray chunk(int index) {
+        if (index < 0) {
+            throw new IllegalArgumentException("Array index out of range");
+        }
+
+        var chunkIndex = Chunks.chunkOf(index, FIRST_CHUNK_SHIFT);
+        var chunk = chunks.get(chunkIndex);
+
+        if (chunk == null) {
+            var created = new AtomicLongArray(Chunks.chunkSize(chunkIndex, FIRST_CHUNK_SHIFT));
+
+            for (int i = 0; i < created.length(); i++) {
+                created.set(i, EMPTY);
+            }
+
+            chunks.compareAndSet(chunkIndex, null, created);
+            chunk = chunks.get(chunkIndex);
+        }
+
+        return chunk;
+    }
+}
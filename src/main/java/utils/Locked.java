@@ -6,16 +6,40 @@ import java.util.function.Function;
 public class Locked<A> {
     protected final A object;
     protected ReentrantLock mutex = new ReentrantLock();
+    private final ValueRecorder lockWait;
 
     public Locked(A object) {
+        this(object, null);
+    }
+
+    public Locked(A object, ValueRecorder lockWait) {
         this.object = object;
+        this.lockWait = lockWait;
     }
 
     public <R> R transaction(Function<A, R> fun) {
-        mutex.lock();
-        R result = fun.apply(object);
-        mutex.unlock();
+        lock();
+
+        try {
+            return fun.apply(object);
+        } finally {
+            unlock();
+        }
+    }
 
-        return result;
+    public A lock() {
+        if (lockWait == null) {
+            mutex.lock();
+        } else if (!mutex.tryLock()) {
+            var start = System.nanoTime();
+            mutex.lock();
+            lockWait.recordSince(start);
+        }
+
+        return object;
+    }
+
+    public void unlock() {
+        mutex.unlock();
     }
 }
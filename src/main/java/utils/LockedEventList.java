@@ -1,16 +1,27 @@
 package utils;
 
 import events.Event;
-import storage.StatSubscriber;
 
 import java.util.List;
 
-public class LockedEventList extends Locked<List<Event>> {
+public class LockedEventList extends Locked<List<Event>> implements EventHistory {
+    private Snapshot<?> snapshot;
+
     public LockedEventList(List<Event> eventList) {
         super(eventList);
     }
 
-    public void applySubscriber(StatSubscriber subscriber) {
-        object.forEach(subscriber::process);
+    public LockedEventList(List<Event> eventList, ValueRecorder lockWait) {
+        super(eventList, lockWait);
+    }
+
+    @Override
+    public Snapshot<?> getSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public void setSnapshot(Snapshot<?> snapshot) {
+        this.snapshot = snapshot;
     }
 }
@@ -0,0 +1,99 @@
+package utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class LogLinearHistogram {
+    private final int subBucketBits;
+    private final int subBuckets;
+    private final AtomicLongArray counts;
+
+    public LogLinearHistogram(int subBucketBits) {
+        if (subBucketBits < 1 || subBucketBits > 16) {
+            throw new IllegalArgumentException("Sub-bucket bits must be in [1, 16]");
+        }
+
+        this.subBucketBits = subBucketBits;
+        this.subBuckets = 1 << subBucketBits;
+        this.counts = new AtomicLongArray(subBuckets * (Long.SIZE - subBucketBits));
+    }
+
+    public void record(long value) {
+        counts.incrementAndGet(indexOf(Math.max(0, value)));
+    }
+
+    public long getCount() {
+        long count = 0;
+
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+
+        return count;
+    }
+
+    public long valueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be in [0, 100]");
+        }
+
+        var snapshot = new long[counts.length()];
+        long total = 0;
+
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        var rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+
+            if (seen >= rank) {
+                return midpointOf(i);
+            }
+        }
+
+        return midpointOf(snapshot.length - 1);
+    }
+
+    public void add(LogLinearHistogram other) {
+        if (other.subBucketBits != subBucketBits) {
+            throw new IllegalArgumentException("Histograms have different precision");
+        }
+
+        for (int i = 0; i < counts.length(); i++) {
+            var count = other.counts.get(i);
+
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+    }
+
+    private int indexOf(long value) {
+        if (value < subBuckets) {
+            return (int) value;
+        }
+
+        var shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - subBucketBits;
+
+        return shift * subBuckets + (int) (value >>> shift);
+    }
+
+    private long midpointOf(int index) {
+        if (index < subBuckets) {
+            return index;
+        }
+
+        var shift = (index - subBuckets) / subBuckets;
+        var lower = (long) (subBuckets + (index - subBuckets) % subBuckets) << shift;
+
+        return lower + ((1L << shift) >>> 1);
+    }
+}
@@ -0,0 +1,69 @@
+package utils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+public class Metrics {
+    public static class Snapshot {
+        private final Map<String, Long> counters;
+        private final Map<String, ValueRecorder.Snapshot> recorders;
+
+        public Snapshot(Map<String, Long> counters, Map<String, ValueRecorder.Snapshot> recorders) {
+            this.counters = counters;
+            this.recorders = recorders;
+        }
+
+        public Map<String, Long> getCounters() {
+            return counters;
+        }
+
+        public Map<String, ValueRecorder.Snapshot> getRecorders() {
+            return recorders;
+        }
+
+        public long getCounter(String name) {
+            return counters.getOrDefault(name, 0L);
+        }
+
+        public ValueRecorder.Snapshot getRecorder(String name) {
+            return recorders.get(name);
+        }
+    }
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, ValueRecorder> recorders = new ConcurrentHashMap<>();
+    private final List<Metrics> included = new CopyOnWriteArrayList<>();
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, (key) -> new LongAdder());
+    }
+
+    public ValueRecorder recorder(String name) {
+        return recorders.computeIfAbsent(name, (key) -> new ValueRecorder());
+    }
+
+    public void include(Metrics other) {
+        included.add(other);
+    }
+
+    public Snapshot snapshot() {
+        Map<String, Long> counterValues = new TreeMap<>();
+        Map<String, ValueRecorder> merged = new TreeMap<>();
+        collect(counterValues, merged);
+
+        Map<String, ValueRecorder.Snapshot> recorderValues = new TreeMap<>();
+        merged.forEach((name, recorder) -> recorderValues.put(name, recorder.snapshot()));
+
+        return new Snapshot(counterValues, recorderValues);
+    }
+
+    private void collect(Map<String, Long> counterValues, Map<String, ValueRecorder> merged) {
+        counters.forEach((name, counter) -> counterValues.merge(name, counter.sum(), Long::sum));
+        recorders.forEach((name, recorder) -> merged.computeIfAbsent(name, (key) -> new ValueRecorder()).add(recorder));
+        included.forEach((other) -> other.collect(counterValues, merged));
+    }
+}
@@ -0,0 +1,63 @@
+package utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class SequenceWatermark {
+    private static final int FIRST_CHUNK_SHIFT = 4;
+    private static final int CHUNK_COUNT = Integer.SIZE - FIRST_CHUNK_SHIFT;
+
+    private final AtomicReferenceArray<AtomicLongArray> chunks = new AtomicReferenceArray<>(CHUNK_COUNT);
+    private final AtomicLong watermark;
+    private final long base;
+
+    public SequenceWatermark(long base) {
+        this.base = base;
+        this.watermark = new AtomicLong(base);
+    }
+
+    public long get() {
+        return watermark.get();
+    }
+
+    public void mark(long sequence) {
+        var bit = sequence - base;
+        var words = words((int) (bit >>> 6));
+        var offset = Chunks.offsetOf((int) (bit >>> 6), FIRST_CHUNK_SHIFT);
+        var mask = 1L << (bit & 63);
+        long word;
+
+        do {
+            word = words.get(offset);
+        } while (!words.compareAndSet(offset, word, word | mask));
+
+        advance();
+    }
+
+    private void advance() {
+        while (true) {
+            var current = watermark.get();
+            var bit = current - base;
+            var words = chunks.get(Chunks.chunkOf((int) (bit >>> 6), FIRST_CHUNK_SHIFT));
+
+            if (words == null || (words.get(Chunks.offsetOf((int) (bit >>> 6), FIRST_CHUNK_SHIFT)) & (1L << (bit & 63))) == 0) {
+                return;
+            }
+
+            watermark.compareAndSet(current, current + 1);
+        }
+    }
+
+    private AtomicLongArray words(int word) {
+        var chunkIndex = Chunks.chunkOf(word, FIRST_CHUNK_SHIFT);
+        var chunk = chunks.get(chunkIndex);
+
+        if (chunk == null) {
+            chunks.compareAndSet(chunkIndex, null, new AtomicLongArray(Chunks.chunkSize(chunkIndex, FIRST_CHUNK_SHIFT)));
+            chunk = chunks.get(chunkIndex);
+        }
+
+        return chunk;
+    }
+}
@@ -0,0 +1,25 @@
+package utils;
+
+public class Snapshot<S> {
+    private final Object owner;
+    private final S state;
+    private final int eventIndex;
+
+    public Snapshot(Object owner, S state, int eventIndex) {
+        this.owner = owner;
+        this.state = state;
+        this.eventIndex = eventIndex;
+    }
+
+    public Object getOwner() {
+        return owner;
+    }
+
+    public S getState() {
+        return state;
+    }
+
+    public int getEventIndex() {
+        return eventIndex;
+    }
+}
@@ -0,0 +1,87 @@
+package utils;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ValueRecorder {
+    private static final int PRECISION_BITS = 5;
+
+    public static class Snapshot {
+        private final long count, total, max;
+        private final long p50, p90, p99, p999;
+
+        public Snapshot(long count, long total, long max, long p50, long p90, long p99, long p999) {
+            this.count = count;
+            this.total = total;
+            this.max = max;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.p999 = p999;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) total / count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP90() {
+            return p90;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public long getP999() {
+            return p999;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.1f p50=%d p90=%d p99=%d p99.9=%d max=%d",
+                    count, getMean(), p50, p90, p99, p999, max);
+        }
+    }
+
+    private final LogLinearHistogram histogram = new LogLinearHistogram(PRECISION_BITS);
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long value) {
+        histogram.record(value);
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public void add(ValueRecorder other) {
+        histogram.add(other.histogram);
+        total.add(other.total.sum());
+        max.accumulate(other.max.get());
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(histogram.getCount(), total.sum(), max.get(),
+                histogram.valueAtPercentile(50), histogram.valueAtPercentile(90),
+                histogram.valueAtPercentile(99), histogram.valueAtPercentile(99.9));
+    }
+}
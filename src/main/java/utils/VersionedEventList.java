@@ -0,0 +1,114 @@
+package utils;
+
+import events.Event;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+public class VersionedEventList implements EventHistory {
+    private static final int MAX_SPINS = 64;
+    private static final int MAX_YIELDS = 8;
+
+    private final ChunkedDynamicArray<Event> events = new ChunkedDynamicArray<>();
+    private final AtomicInteger published = new AtomicInteger(0);
+    private final AtomicReference<Snapshot<?>> snapshot = new AtomicReference<>(null);
+    private final Queue<Thread> waiters = new ConcurrentLinkedQueue<>();
+
+    public int getVersion() {
+        return events.getSize();
+    }
+
+    public List<Event> view(int version) {
+        return new AbstractList<>() {
+            @Override
+            public Event get(int index) {
+                if (index >= version) {
+                    throw new IndexOutOfBoundsException(index);
+                }
+
+                return events.getPublished(index);
+            }
+
+            @Override
+            public int size() {
+                return version;
+            }
+        };
+    }
+
+    public boolean compareAndAppend(int version, Event event) {
+        return events.compareAndPushBack(version, event);
+    }
+
+    public int append(Event event) {
+        return events.pushBack(event);
+    }
+
+    public <T> T publish(int version, Supplier<T> action) {
+        awaitTurn(version);
+
+        try {
+            return action.get();
+        } finally {
+            published.set(version + 1);
+
+            if (!waiters.isEmpty()) {
+                waiters.forEach(LockSupport::unpark);
+            }
+        }
+    }
+
+    private void awaitTurn(int version) {
+        for (int spins = 0; spins < MAX_SPINS + MAX_YIELDS; spins++) {
+            if (published.get() == version) {
+                return;
+            }
+
+            if (spins < MAX_SPINS) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+
+        var current = Thread.currentThread();
+        waiters.add(current);
+
+        try {
+            while (published.get() != version) {
+                LockSupport.park(this);
+            }
+        } finally {
+            waiters.remove(current);
+        }
+    }
+
+    @Override
+    public <R> R transaction(Function<List<Event>, R> fun) {
+        return fun.apply(view(getVersion()));
+    }
+
+    @Override
+    public Snapshot<?> getSnapshot() {
+        return snapshot.get();
+    }
+
+    @Override
+    public void setSnapshot(Snapshot<?> snapshot) {
+        var current = this.snapshot.get();
+
+        while (current == null || current.getEventIndex() < snapshot.getEventIndex()) {
+            if (this.snapshot.compareAndSet(current, snapshot)) {
+                return;
+            }
+            current = this.snapshot.get();
+        }
+    }
+}
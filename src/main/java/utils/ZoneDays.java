@@ -0,0 +1,81 @@
+package utils;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+
+public class ZoneDays {
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private static class Window {
+        final long from, until;
+        final long offsetMillis;
+
+        Window(long from, long until, long offsetMillis) {
+            this.from = from;
+            this.until = until;
+            this.offsetMillis = offsetMillis;
+        }
+
+        boolean contains(long epochMillis) {
+            return from <= epochMillis && epochMillis < until;
+        }
+    }
+
+    private final ZoneId zone;
+    private final ZoneRules rules;
+    private volatile Window current;
+    private volatile Window previous;
+
+    public ZoneDays(ZoneId zone) {
+        this.zone = zone;
+        this.rules = zone.getRules();
+        this.current = windowOf(System.currentTimeMillis());
+        this.previous = current;
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    public long epochDay(long epochMillis) {
+        return Math.floorDiv(localMillis(epochMillis), DAY_MILLIS);
+    }
+
+    public long localMillis(long epochMillis) {
+        var window = current;
+
+        if (!window.contains(epochMillis)) {
+            window = previous;
+
+            if (!window.contains(epochMillis)) {
+                window = windowOf(epochMillis);
+                previous = current;
+                current = window;
+            }
+        }
+
+        return epochMillis + window.offsetMillis;
+    }
+
+    public long startOfDay(long epochDay) {
+        return LocalDate.ofEpochDay(epochDay).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    private Window windowOf(long epochMillis) {
+        var offsetMillis = rules.getOffset(Instant.ofEpochMilli(epochMillis)).getTotalSeconds() * 1000L;
+
+        if (rules.isFixedOffset()) {
+            return new Window(Long.MIN_VALUE, Long.MAX_VALUE, offsetMillis);
+        }
+
+        var instant = Instant.ofEpochMilli(epochMillis);
+        var before = rules.previousTransition(instant.plusMillis(1));
+        var after = rules.nextTransition(instant);
+
+        return new Window(before == null ? Long.MIN_VALUE : before.toEpochSecond() * 1000,
+                after == null ? Long.MAX_VALUE : after.toEpochSecond() * 1000,
+                offsetMillis);
+    }
+}
@@ -1,21 +1,67 @@
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import events.*;
+import server.CheckInServer;
+import server.LoadGenerator;
+import services.CompactionService;
 import services.EnterService;
+import services.ExpiryIndex;
 import services.ManagerService;
+import services.MembershipInfo;
 import services.StatService;
+import storage.AsyncEventDispatcher;
+import storage.EventArchive;
+import storage.EventJournal;
+import storage.EventLog;
 import storage.EventStorage;
+import storage.EventStore;
+import storage.EventListFactory;
+import storage.GroupCommitWriter;
+import storage.OffHeapEventColumns;
+import storage.ShardedEventStorage;
+import storage.StatSubscriber;
+import utils.ChunkedDynamicArray;
 import utils.DateUtils;
+import utils.DynamicArray;
+import utils.IntLongDynamicArray;
+import utils.ZoneDays;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static java.util.stream.IntStream.range;
 import static org.junit.jupiter.api.Assertions.*;
@@ -124,6 +170,1065 @@ public class EventSourcingTest {
         assertEquals(4, info.getAttendanceCount());
     }
 
+    @Test
+    void snapshotMatchesReplayTest() {
+        for (int interval : new int[]{1, 3, EventStorage.DEFAULT_SNAPSHOT_INTERVAL}) {
+            EventStorage storage = EventStorage.builder().snapshotInterval(interval).build();
+            ManagerService manager = new ManagerService(storage);
+            EnterService enter = new EnterService(storage);
+            int id = manager.registerMembership(now, fromNow(10));
+
+            for (int i = 0; i < 100; i++) {
+                if (i % 17 == 0) {
+                    manager.extendMembership(id, Duration.ofMillis(1000));
+                }
+                enter.enter(id, fromNow(2 * i));
+                if (i % 5 != 0) {
+                    enter.exit(id, fromNow(2 * i + 1));
+                }
+
+                var snapshotted = manager.getMembershipInfo(id);
+                var replayed = storage.transactionOn(id, (history) -> new MembershipInfo(id, history));
+                assertEquals(replayed.getRegisterDate(), snapshotted.getRegisterDate());
+                assertEquals(replayed.getExpireDate(), snapshotted.getExpireDate());
+                assertEquals(replayed.getAttendanceCount(), snapshotted.getAttendanceCount());
+                assertEquals(replayed.isEntered(), snapshotted.isEntered());
+            }
+        }
+    }
+
+    @Test
+    void journalRecoveryTest(@TempDir Path directory) throws IOException {
+        int first, second;
+
+        try (EventStorage storage = EventStorage.builder().journal(new EventJournal(directory, 1024)).build()) {
+            ManagerService manager = new ManagerService(storage);
+            EnterService enter = new EnterService(storage);
+            first = manager.registerMembership(now, fromNow(100));
+            second = manager.registerMembership(now, fromNow(10));
+            manager.extendMembership(second, Duration.ofMillis(50_000));
+
+            for (int i = 0; i < 40; i++) {
+                assertTrue(enter.enter(first, fromNow(2 * i)));
+                assertTrue(enter.exit(first, fromNow(2 * i + 1)));
+            }
+            assertTrue(enter.enter(second, fromNow(30)));
+        }
+
+        try (var segments = Files.list(directory)) {
+            var last = segments.max(Path::compareTo).orElseThrow();
+            Files.write(last, new byte[]{3, 0, 0, 0, 1, 42}, StandardOpenOption.APPEND);
+        }
+
+        try (EventStorage storage = EventStorage.builder().journal(new EventJournal(directory, 1024)).build()) {
+            ManagerService manager = new ManagerService(storage);
+            EnterService enter = new EnterService(storage);
+            StatService stats = new StatService(storage);
+
+            var info = manager.getMembershipInfo(first);
+            assertEquals(now, info.getRegisterDate());
+            assertEquals(40, info.getAttendanceCount());
+            assertFalse(info.isEntered());
+            assertEquals(Duration.ofSeconds(1), stats.getAverageDuration());
+
+            info = manager.getMembershipInfo(second);
+            assertEquals(fromNow(60), info.getExpireDate());
+            assertTrue(info.isEntered());
+            assertTrue(enter.exit(second, fromNow(40)));
+        }
+
+        try (EventStorage storage = EventStorage.builder().journal(new EventJournal(directory, 1024)).build()) {
+            var info = new ManagerService(storage).getMembershipInfo(second);
+            assertFalse(info.isEntered());
+            assertEquals(1, info.getAttendanceCount());
+        }
+    }
+
+    @Test
+    void groupCommitTest(@TempDir Path directory) {
+        int memberCount = 50;
+        int visits = 20;
+        GroupCommitWriter writer = new GroupCommitWriter(new EventJournal(directory), 16, Duration.ofMillis(1));
+
+        try (EventStorage storage = EventStorage.builder().journal(writer).build()) {
+            ManagerService manager = new ManagerService(storage);
+            EnterService enter = new EnterService(storage);
+            int[] ids = range(0, memberCount).parallel().map(i -> manager.registerMembership(now, fromNow(1000))).toArray();
+
+            range(0, memberCount).parallel().forEach(i -> {
+                for (int j = 0; j < visits; j++) {
+                    assertTrue(enter.enter(ids[i], fromNow(2 * j)));
+                    assertTrue(enter.exit(ids[i], fromNow(2 * j + 1)));
+                }
+            });
+
+            var batchSizes = storage.getMetrics().snapshot().getRecorder("journal.batchSize");
+            assertEquals(memberCount * (2L * visits + 1), batchSizes.getTotal());
+            assertTrue(batchSizes.getMax() <= 16);
+            assertTrue(batchSizes.getCount() >= batchSizes.getTotal() / 16);
+            var snapshot = storage.getMetrics().snapshot();
+            assertEquals(batchSizes.getCount(), snapshot.getRecorder("journal.fsyncNanos").getCount());
+            assertEquals(batchSizes.getTotal(), snapshot.getRecorder("journal.commitLatencyNanos").getCount());
+        }
+
+        try (EventStorage storage = EventStorage.builder().journal(new EventJournal(directory)).build()) {
+            ManagerService manager = new ManagerService(storage);
+            range(0, memberCount).forEach(id -> assertEquals(visits, manager.getMembershipInfo(id).getAttendanceCount()));
+        }
+    }
+
+    @Test
+    void optimisticGroupCommitTest(@TempDir Path directory) {
+        int swipes = 2000;
+        AtomicInteger accepted = new AtomicInteger(0);
+        GroupCommitWriter writer = new GroupCommitWriter(new EventJournal(directory), 16, Duration.ofMillis(1));
+
+        try (EventStorage storage = EventStorage.builder().journal(writer)
+                .mode(EventStorage.ConcurrencyMode.OPTIMISTIC).build()) {
+            ManagerService manager = new ManagerService(storage);
+            EnterService enter = new EnterService(storage);
+            int id = manager.registerMembership(now, fromNow(swipes));
+
+            range(0, swipes).parallel().forEach(i -> {
+                if (i % 2 == 0 ? enter.enter(id, fromNow(i)) : enter.exit(id, fromNow(i))) {
+                    accepted.incrementAndGet();
+                }
+            });
+
+            assertEquals(accepted.get() + 1, storage.getMetrics().snapshot().getRecorder("journal.batchSize").getTotal());
+        }
+
+        try (EventStorage storage = EventStorage.builder().journal(new EventJournal(directory)).build()) {
+            var info = new ManagerService(storage).getMembershipInfo(0);
+            assertEquals(accepted.get() + 1, storage.getSequence());
+            assertEquals((accepted.get() + 1) / 2, info.getAttendanceCount());
+            assertEquals(accepted.get() % 2 == 1, info.isEntered());
+        }
+    }
+
+    @Test
+    void journalFailureTest() {
+        var failing = new AtomicBoolean(false);
+        List<Event> journaled = new ArrayList<>();
+        EventLog journal = new EventLog() {
+            @Override
+            public void recover(Consumer<Event> consumer) {
+            }
+
+            @Override
+            public void append(Event event) {
+                if (failing.get()) {
+                    throw new IllegalStateException("Disk full");
+                }
+                journaled.add(event);
+            }
+
+            @Override
+            public void force() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        try (EventStorage storage = EventStorage.builder().journal(journal).build()) {
+            ManagerService manager = new ManagerService(storage);
+            EnterService enter = new EnterService(storage);
+            StatService stats = new StatService(storage);
+            int id = manager.registerMembership(now, fromNow(10));
+
+            failing.set(true);
+            assertThrows(IllegalStateException.class, () -> enter.enter(id, fromNow(1)));
+            assertThrows(IllegalStateException.class, () -> manager.registerMembership(now, fromNow(10)));
+            assertEquals(1, storage.getSequence());
+            assertFalse(manager.getMembershipInfo(id).isEntered());
+            assertEquals(0, stats.getOccupancy());
+
+            failing.set(false);
+            assertTrue(enter.enter(id, fromNow(1)));
+            assertTrue(manager.getMembershipInfo(id).isEntered());
+            assertEquals(1, stats.getOccupancy());
+
+            List<Event> logged = new ArrayList<>();
+            storage.forEachEvent(logged::add);
+            assertArrayEquals(encode(logged), encode(journaled));
+        }
+    }
+
+    @Test
+    void journalOrderTest(@TempDir Path directory) {
+        int memberCount = 20;
+        int visits = 50;
+        GroupCommitWriter writer = new GroupCommitWriter(new EventJournal(directory), 16, Duration.ofMillis(1));
+        List<Event> logged = new ArrayList<>();
+
+        try (EventStorage storage = EventStorage.builder().journal(writer).build()) {
+            ManagerService manager = new ManagerService(storage);
+            EnterService enter = new EnterService(storage);
+            int[] ids = range(0, memberCount).map(i -> manager.registerMembership(now, fromNow(1000))).toArray();
+
+            range(0, memberCount).parallel().forEach(i -> {
+                for (int j = 0; j < visits; j++) {
+                    enter.enter(ids[i], fromNow(2 * j));
+                    enter.exit(ids[i], fromNow(2 * j + 1));
+                }
+            });
+
+            storage.forEachEvent(logged::add);
+        }
+
+        List<Event> journaled = new ArrayList<>();
+        try (EventJournal journal = new EventJournal(directory)) {
+            journal.recover(journaled::add);
+        }
+
+        assertArrayEquals(encode(logged), encode(journaled));
+    }
+
+    private static byte[] encode(List<Event> events) {
+        ByteBuffer buffer = ByteBuffer.allocate(events.size() * EventCodec.RECORD_SIZE);
+        events.forEach(event -> EventCodec.encode(event, buffer));
+
+        return buffer.array();
+    }
+
+    @Test
+    void eventCodecTest() {
+        ByteBuffer buffer = ByteBuffer.allocate(4 * EventCodec.RECORD_SIZE);
+        EventCodec.encode(new MembershipSetUp(7, now, fromNow(10)), buffer);
+        EventCodec.encode(new MembershipExtended(7, Duration.ofMillis(1500)), buffer);
+        EventCodec.encode(new MemberEntered(7, fromNow(1)), buffer, 2 * EventCodec.RECORD_SIZE);
+        EventCodec.encode(new MemberLeft(7, fromNow(2)), buffer, 3 * EventCodec.RECORD_SIZE);
+        buffer.rewind();
+
+        var setUp = (MembershipSetUp) EventCodec.decode(buffer);
+        assertEquals(7, setUp.getMembershipId());
+        assertEquals(now, setUp.getRegisterDate());
+        assertEquals(fromNow(10), setUp.getExpireDate());
+        assertEquals(Duration.ofMillis(1500), ((MembershipExtended) EventCodec.decode(buffer)).getDuration());
+        assertEquals(fromNow(1), ((MemberEntered) EventCodec.decode(buffer, 2 * EventCodec.RECORD_SIZE)).getEnterDate());
+        assertEquals(fromNow(2), ((MemberLeft) EventCodec.decode(buffer, 3 * EventCodec.RECORD_SIZE)).getExitDate());
+    }
+
+    @Test
+    void offHeapStorageTest() {
+        EventStorage storage = EventStorage.builder().eventLists(new OffHeapEventColumns()).build();
+        ManagerService manager = new ManagerService(storage);
+        EnterService enter = new EnterService(storage);
+        StatService stats = new StatService(storage);
+        int id = manager.registerMembership(now, fromNow(10));
+
+        assertTrue(enter.enter(id, fromNow(1)));
+        assertFalse(enter.enter(id, fromNow(2)));
+        assertTrue(enter.exit(id, fromNow(3)));
+        assertFalse(enter.enter(id, fromNow(12)));
+        manager.extendMembership(id, Duration.ofMillis(10_000));
+        assertTrue(enter.enter(id, fromNow(12)));
+
+        var info = manager.getMembershipInfo(id);
+        assertEquals(now, info.getRegisterDate());
+        assertEquals(fromNow(20), info.getExpireDate());
+        assertEquals(2, info.getAttendanceCount());
+        assertTrue(info.isEntered());
+        assertEquals(Duration.ofSeconds(2), stats.getAverageDuration());
+    }
+
+    @Test
+    void offHeapFootprintTest() {
+        OffHeapEventColumns columns = new OffHeapEventColumns();
+        EventStorage storage = EventStorage.builder().eventLists(columns).build();
+        ManagerService manager = new ManagerService(storage);
+
+        for (int i = 0; i < 1000; i++) {
+            int id = manager.registerMembership(now, fromNow(1000));
+            for (int j = 0; j < 499; j++) {
+                manager.extendMembership(id, Duration.ofMillis(j));
+            }
+        }
+
+        int historySize = storage.transactionOn(999, (history) -> history.size());
+        assertEquals(500, historySize);
+        assertEquals(500_000, columns.getRows());
+        assertEquals(500_000, storage.getSequence());
+        long chunks = (500_000 + OffHeapEventColumns.CHUNK_ROWS - 1) / OffHeapEventColumns.CHUNK_ROWS;
+        assertEquals(chunks * OffHeapEventColumns.CHUNK_ROWS * EventCodec.RECORD_SIZE, columns.offHeapBytes());
+    }
+
+    @Test
+    void intLongDynamicArrayTest() {
+        IntLongDynamicArray array = new IntLongDynamicArray();
+        int size = 100_000;
+
+        assertEquals(IntLongDynamicArray.EMPTY, array.get(size));
+        range(0, size).parallel().forEach(i -> array.put(i, 3L * i));
+        range(0, size).parallel().forEach(i -> assertEquals(3L * i, array.getAndSet(i, IntLongDynamicArray.EMPTY)));
+        range(0, size).forEach(i -> assertEquals(IntLongDynamicArray.EMPTY, array.get(i)));
+        assertTrue(array.compareAndSet(size - 1, IntLongDynamicArray.EMPTY, 1));
+        assertFalse(array.compareAndSet(size - 1, IntLongDynamicArray.EMPTY, 2));
+    }
+
+    @Test
+    void chunkedDynamicArrayTest() {
+        DynamicArray<Integer> array = new ChunkedDynamicArray<>();
+        int size = 100_000;
+
+        int[] indices = range(0, size).parallel().map(i -> array.pushBack(i % 7 == 0 ? null : i)).toArray();
+        assertEquals(size, array.getSize());
+        assertEquals(size, Arrays.stream(indices).distinct().count());
+        range(0, size).parallel().forEach(i -> array.put(indices[i], i));
+        range(0, size).forEach(i -> assertEquals(i, array.get(indices[i])));
+        assertThrows(IllegalArgumentException.class, () -> array.get(size));
+    }
+
+    @Test
+    void optimisticContendedEnterTest() {
+        EventStorage storage = EventStorage.builder().mode(EventStorage.ConcurrencyMode.OPTIMISTIC).build();
+        ManagerService manager = new ManagerService(storage);
+        EnterService enter = new EnterService(storage);
+        StatService stats = new StatService(storage);
+        int id = manager.registerMembership(now, fromNow(100_000));
+        AtomicInteger enters = new AtomicInteger(0);
+        AtomicInteger exits = new AtomicInteger(0);
+
+        range(0, 20_000).parallel().forEach(i -> {
+            if (i % 2 == 0 && enter.enter(id, fromNow(i))) {
+                enters.incrementAndGet();
+            } else if (i % 2 == 1 && enter.exit(id, fromNow(100_000 + i))) {
+                exits.incrementAndGet();
+            }
+        });
+
+        var info = manager.getMembershipInfo(id);
+        assertTrue(enters.get() > 0);
+        assertEquals(enters.get(), info.getAttendanceCount());
+        assertEquals(enters.get() - exits.get(), info.isEntered() ? 1 : 0);
+        assertEquals(exits.get(), stats.getStatisticsOfDate(DateUtils.truncateToDays(now)).getAttendance()
+                + range(1, 3).mapToObj(day -> stats.getStatisticsOfDate(DateUtils.truncateToDays(fromNow(day * 24 * 60 * 60))))
+                .filter(Objects::nonNull).mapToInt(StatService.Statistics::getAttendance).sum());
+        assertThrows(UnsupportedOperationException.class,
+                () -> storage.transactionOn(id, (history) -> history.add(new MemberLeft(id, now))));
+    }
+
+    @Test
+    void failedTransactionReleasesLockTest() {
+        int id = managerService.registerMembership(now, fromNow(10));
+        EventStorage storage = new EventStorage();
+        int other = storage.registerEventList();
+
+        assertThrows(IllegalStateException.class, () -> storage.transactionOn(other, (history) -> {
+            throw new IllegalStateException();
+        }));
+        assertEquals(0, CompletableFuture.supplyAsync(() -> storage.transactionOn(other, List::size)).join());
+        assertTrue(enterService.enter(id, fromNow(1)));
+    }
+
+    @Test
+    void asyncDispatchTest() {
+        AsyncEventDispatcher dispatcher = new AsyncEventDispatcher(4, 16);
+
+        try (EventStorage storage = EventStorage.builder().dispatcher(dispatcher).build()) {
+            ManagerService manager = new ManagerService(storage);
+            EnterService enter = new EnterService(storage);
+            StatService stats = new StatService(storage);
+            int[] ids = range(0, 100).map(i -> manager.registerMembership(now, fromNow(1000))).toArray();
+
+            range(0, 100).parallel().forEach(i -> {
+                for (int j = 0; j < 10; j++) {
+                    assertTrue(enter.enter(ids[i], fromNow(3 * j)));
+                    assertTrue(enter.exit(ids[i], fromNow(3 * j + 2)));
+                }
+            });
+
+            storage.awaitSequence(storage.getSequence());
+            assertEquals(Duration.ofSeconds(2), stats.getAverageDuration());
+            assertEquals(0, dispatcher.getFailures());
+        }
+    }
+
+    @Test
+    void catchUpSubscriptionTest() {
+        EventStorage storage = new EventStorage();
+        ManagerService manager = new ManagerService(storage);
+        EnterService enter = new EnterService(storage);
+        int[] ids = range(0, 50).map(i -> manager.registerMembership(now, fromNow(100_000))).toArray();
+        Map<Long, Integer> fromStart = new ConcurrentHashMap<>();
+        Map<Long, Integer> fromOffset = new ConcurrentHashMap<>();
+        long offset = storage.getSequence() / 2;
+
+        var writers = CompletableFuture.runAsync(() -> range(0, 50).parallel().forEach(i -> {
+            for (int j = 0; j < 200; j++) {
+                enter.enter(ids[i], fromNow(2 * j));
+                enter.exit(ids[i], fromNow(2 * j + 1));
+            }
+        }));
+        storage.subscribe(new StatSubscriber() {
+            @Override
+            public void process(Event event) {
+            }
+
+            @Override
+            public void process(long sequence, Event event) {
+                fromStart.merge(sequence, 1, Integer::sum);
+            }
+        });
+        storage.subscribe(new StatSubscriber() {
+            @Override
+            public void process(Event event) {
+            }
+
+            @Override
+            public void process(long sequence, Event event) {
+                fromOffset.merge(sequence, 1, Integer::sum);
+            }
+        }, offset);
+        writers.join();
+
+        long total = storage.getSequence();
+        assertEquals(50 + 50 * 400, total);
+        assertEquals(total, fromStart.size());
+        assertEquals(total - offset, fromOffset.size());
+        range(0, (int) total).forEach(i -> assertEquals(1, fromStart.get((long) i)));
+        range((int) offset, (int) total).forEach(i -> assertEquals(1, fromOffset.get((long) i)));
+    }
+
+    @Test
+    void durationPercentilesTest() {
+        int visits = 1000;
+        int id = managerService.registerMembership(now, fromNow(visits * 20_000));
+
+        for (int i = 1; i <= visits; i++) {
+            assertTrue(enterService.enter(id, fromNow(10_000 * i)));
+            assertTrue(enterService.exit(id, fromNow(10_000 * i + i)));
+        }
+
+        for (double percentile : new double[]{50, 95, 99}) {
+            double expected = percentile / 100 * visits;
+            double actual = statService.getPercentileDuration(percentile).toMillis() / 1000.0;
+            assertEquals(expected, actual, expected * 0.07);
+        }
+
+        var day = statService.getStatisticsOfDate(DateUtils.truncateToDays(fromNow(10_000)));
+        assertTrue(day.percentileDuration(50).compareTo(day.percentileDuration(99)) <= 0);
+        assertEquals(day.getTotalDuration().dividedBy(day.getAttendance()).toMillis(), day.averageDuration().toMillis());
+    }
+
+    @Test
+    void rangeStatisticsTest() {
+        int secondsInDay = 24 * 60 * 60;
+        int days = 40;
+        int id = managerService.registerMembership(now, fromNow(days * secondsInDay));
+
+        for (int day = 0; day < days; day++) {
+            for (int visit = 0; visit < day % 3 + 1; visit++) {
+                int enter = day * secondsInDay + visit * 3600;
+                assertTrue(enterService.enter(id, fromNow(enter)));
+                assertTrue(enterService.exit(id, fromNow(enter + 60 * (visit + 1))));
+            }
+        }
+
+        Date from = fromNow(5 * secondsInDay), to = fromNow(31 * secondsInDay);
+        long attendance = 0, duration = 0;
+        for (int day = 5; day < 31; day++) {
+            var stat = statService.getStatisticsOfDate(DateUtils.truncateToDays(fromNow(day * secondsInDay)));
+            if (stat != null) {
+                attendance += stat.getAttendance();
+                duration += stat.getTotalDuration().toMillis();
+            }
+        }
+
+        var range = statService.getStatistics(from, to);
+        assertEquals(attendance, range.getAttendance());
+        assertEquals(duration, range.getTotalDuration().toMillis());
+        assertEquals(DateUtils.truncateToDays(from), range.getFrom());
+
+        for (var rollUp : List.of(statService.getWeeklyStatistics(from, to), statService.getMonthlyStatistics(from, to))) {
+            assertEquals(range.getFrom(), rollUp.get(0).getFrom());
+            assertEquals(range.getTo(), rollUp.get(rollUp.size() - 1).getTo());
+            assertEquals(attendance, rollUp.stream().mapToLong(StatService.RangeStatistics::getAttendance).sum());
+            assertEquals(duration, rollUp.stream().mapToLong(stat -> stat.getTotalDuration().toMillis()).sum());
+        }
+        assertTrue(statService.getWeeklyStatistics(from, to).size() >= 4);
+    }
+
+    @Test
+    void zoneDaysTest() {
+        Random random = new Random(42);
+        for (String zone : new String[]{"UTC", "Europe/Moscow", "Europe/Berlin", "America/New_York"}) {
+            ZoneDays days = new ZoneDays(ZoneId.of(zone));
+            for (int i = 0; i < 10_000; i++) {
+                long millis = (long) (random.nextDouble() * 2_000_000_000_000L);
+                assertEquals(Instant.ofEpochMilli(millis).atZone(ZoneId.of(zone)).toLocalDate().toEpochDay(), days.epochDay(millis));
+            }
+            long day = LocalDate.of(2024, 3, 31).toEpochDay();
+            assertEquals(day, days.epochDay(days.startOfDay(day)));
+            assertEquals(day - 1, days.epochDay(days.startOfDay(day) - 1));
+        }
+    }
+
+    @Test
+    void zonedStatisticsTest() {
+        EventStorage storage = new EventStorage();
+        ManagerService manager = new ManagerService(storage);
+        EnterService enter = new EnterService(storage);
+        StatService moscow = new StatService(storage, ZoneId.of("Europe/Moscow"));
+        StatService utc = new StatService(storage);
+        Date lateEvening = Date.from(Instant.parse("2024-05-10T22:30:00Z"));
+        Date nextMorning = Date.from(Instant.parse("2024-05-10T23:30:00Z"));
+        int id = manager.registerMembership(lateEvening, Date.from(Instant.parse("2024-06-01T00:00:00Z")));
+
+        assertTrue(enter.enter(id, lateEvening));
+        assertTrue(enter.exit(id, nextMorning));
+
+        assertEquals(1, moscow.getStatisticsOfDate(Date.from(Instant.parse("2024-05-11T12:00:00Z"))).getAttendance());
+        assertNull(moscow.getStatisticsOfDate(Date.from(Instant.parse("2024-05-10T12:00:00Z"))));
+        assertEquals(1, utc.getStatisticsOfDate(Date.from(Instant.parse("2024-05-10T12:00:00Z"))).getAttendance());
+        assertEquals(Date.from(Instant.parse("2024-05-10T21:00:00Z")),
+                moscow.getStatistics(lateEvening, Date.from(Instant.parse("2024-05-12T00:00:00Z"))).getFrom());
+    }
+
+    @Test
+    void bulkRegistrationTest() {
+        EventStorage storage = new EventStorage();
+        ManagerService manager = new ManagerService(storage);
+        int[] singles = new int[1000];
+        int[] bulks = new int[10];
+        range(0, 1010).parallel().forEach(i -> {
+            if (i < 1000) {
+                singles[i] = manager.registerMembership(now, fromNow(10));
+            } else {
+                bulks[i - 1000] = manager.registerMemberships(500, now, fromNow(100));
+            }
+        });
+
+        boolean[] taken = new boolean[6000];
+        for (int id : singles) {
+            assertFalse(taken[id]);
+            taken[id] = true;
+            assertEquals(fromNow(10), manager.getMembershipInfo(id).getExpireDate());
+        }
+        for (int first : bulks) {
+            for (int id = first; id < first + 500; id++) {
+                assertFalse(taken[id]);
+                taken[id] = true;
+                assertEquals(fromNow(100), manager.getMembershipInfo(id).getExpireDate());
+            }
+        }
+        assertTrue(new EnterService(storage).enter(bulks[0] + 499, fromNow(1)));
+        assertEquals(6001, storage.getSequence());
+    }
+
+    @Test
+    void batchEnterExitTest() {
+        for (EventStorage.ConcurrencyMode mode : EventStorage.ConcurrencyMode.values()) {
+            EventStorage storage = EventStorage.builder().mode(mode).build();
+            ManagerService manager = new ManagerService(storage);
+            EnterService enter = new EnterService(storage);
+            StatService stats = new StatService(storage);
+            int first = manager.registerMembership(now, fromNow(100));
+            int second = manager.registerMembership(now, fromNow(100));
+            int expired = manager.registerMembership(now, fromNow(1));
+
+            boolean[] entered = enter.enterAll(List.of(
+                    new EnterService.Swipe(first, fromNow(10)),
+                    new EnterService.Swipe(second, fromNow(11)),
+                    new EnterService.Swipe(first, fromNow(12)),
+                    new EnterService.Swipe(expired, fromNow(13))));
+            assertArrayEquals(new boolean[]{true, true, false, false}, entered);
+            assertEquals(2, stats.getOccupancy());
+
+            boolean[] left = enter.exitAll(List.of(
+                    new EnterService.Swipe(first, fromNow(20)),
+                    new EnterService.Swipe(first, fromNow(21)),
+                    new EnterService.Swipe(second, fromNow(41))));
+            assertArrayEquals(new boolean[]{true, false, true}, left);
+
+            assertEquals(1, manager.getMembershipInfo(first).getAttendanceCount());
+            assertFalse(manager.getMembershipInfo(second).isEntered());
+            assertEquals(0, stats.getOccupancy());
+            assertEquals(20, stats.getAverageDuration().toSeconds());
+            assertEquals(7, storage.getSequence());
+        }
+    }
+
+    @Test
+    void largeBatchEnterTest() {
+        EventStorage storage = new EventStorage();
+        ManagerService manager = new ManagerService(storage);
+        EnterService enter = new EnterService(storage);
+        StatService stats = new StatService(storage);
+        int memberCount = 5000;
+        int first = manager.registerMemberships(memberCount, now, fromNow(100));
+        List<EnterService.Swipe> swipes = range(first, first + memberCount)
+                .mapToObj(id -> new EnterService.Swipe(id, fromNow(10))).collect(Collectors.toList());
+
+        boolean[] entered = enter.enterAll(swipes);
+        for (boolean accepted : entered) {
+            assertTrue(accepted);
+        }
+        assertEquals(memberCount, stats.getOccupancy());
+        assertEquals(memberCount + memberCount, storage.getSequence());
+
+        long sequence = storage.getSequence();
+        assertThrows(IllegalStateException.class, () -> storage.appendEach(swipes, EnterService.Swipe::getMembershipId,
+                MembershipInfo.PROJECTION, (info, swipe) -> {
+                    if (swipe.getMembershipId() == first + memberCount - 1) {
+                        throw new IllegalStateException();
+                    }
+                    return new MemberLeft(swipe.getMembershipId(), fromNow(20));
+                }));
+        assertEquals(sequence, storage.getSequence());
+        assertTrue(manager.getMembershipInfo(first).isEntered());
+        assertEquals(memberCount, stats.getOccupancy());
+        assertTrue(enter.exit(first, fromNow(20)));
+    }
+
+    @Test
+    void metricsTest() {
+        EventStorage storage = new EventStorage();
+        ManagerService manager = new ManagerService(storage);
+        EnterService enter = new EnterService(storage);
+        new StatService(storage);
+        int id = manager.registerMembership(now, fromNow(100));
+
+        assertTrue(enter.enter(id, fromNow(1)));
+        assertFalse(enter.enter(id, fromNow(2)));
+        assertTrue(enter.exit(id, fromNow(3)));
+
+        var snapshot = storage.getMetrics().snapshot();
+        assertEquals(1, snapshot.getCounter("enter.accepted"));
+        assertEquals(1, snapshot.getCounter("enter.rejected"));
+        assertEquals(1, snapshot.getCounter("exit.accepted"));
+        assertEquals(0, snapshot.getCounter("exit.rejected"));
+        assertEquals(1, snapshot.getRecorder("storage.dispatchNanos").getCount());
+        assertEquals(0, snapshot.getRecorder("storage.lockWaitNanos").getCount());
+        assertEquals(3, snapshot.getRecorder("storage.replayedEvents").getCount());
+        assertEquals(1 + 2 + 2, snapshot.getRecorder("storage.replayedEvents").getTotal());
+        assertEquals(2, snapshot.getRecorder("storage.replayedEvents").getMax());
+    }
+
+    @Test
+    void checkInServerTest() throws Exception {
+        try (CheckInServer server = new CheckInServer(new EventStorage(), new InetSocketAddress("localhost", 0))) {
+            server.start();
+            URI base = URI.create("http://localhost:" + server.getPort());
+
+            LoadGenerator.Result result = new LoadGenerator(base).run(20, Duration.ofMillis(500));
+            assertTrue(result.getRequests() > 0);
+            assertEquals(0, result.getFailures());
+            assertEquals(result.getRequests(), result.getLatencyNanos().getCount());
+
+            var snapshot = server.getStorage().getMetrics().snapshot();
+            assertEquals(result.getRequests(), snapshot.getCounter("enter.accepted") + snapshot.getCounter("exit.accepted"));
+
+            HttpResponse<String> missing = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(base.resolve("/enter?id=0")).POST(HttpRequest.BodyPublishers.noBody()).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(400, missing.statusCode());
+        }
+    }
+
+    @Test
+    void membershipCacheTest() {
+        EventStorage storage = new EventStorage();
+        ManagerService manager = new ManagerService(storage, 16);
+        EnterService enter = new EnterService(storage);
+        int id = manager.registerMembership(now, fromNow(100));
+
+        assertEquals(0, manager.getMembershipInfo(id).getAttendanceCount());
+        assertEquals(0, manager.getMembershipInfo(id).getAttendanceCount());
+        assertTrue(enter.enter(id, fromNow(1)));
+        var info = manager.getMembershipInfo(id);
+        assertEquals(1, info.getAttendanceCount());
+        assertTrue(info.isEntered());
+        info.setEntered(false);
+        assertTrue(manager.getMembershipInfo(id).isEntered());
+
+        var snapshot = storage.getMetrics().snapshot();
+        assertEquals(2, snapshot.getCounter("membershipCache.misses"));
+        assertEquals(2, snapshot.getCounter("membershipCache.hits"));
+        assertEquals(0, snapshot.getCounter("membershipCache.evictions"));
+
+        int first = manager.registerMemberships(64, now, fromNow(100));
+        range(first, first + 64).forEach(manager::getMembershipInfo);
+        assertTrue(storage.getMetrics().snapshot().getCounter("membershipCache.evictions") >= 64 - 16);
+
+        ManagerService other = new ManagerService(storage, 16);
+        long invalidations = storage.getMetrics().snapshot().getCounter("membershipCache.invalidations");
+        assertTrue(enter.exit(id, fromNow(2)));
+        assertEquals(invalidations + 1, storage.getMetrics().snapshot().getCounter("membershipCache.invalidations"));
+        assertFalse(other.getMembershipInfo(id).isEntered());
+        assertThrows(IllegalArgumentException.class, () -> new ManagerService(storage, 32));
+    }
+
+    @Test
+    void expiryIndexTest() {
+        EventStorage storage = new EventStorage();
+        ManagerService manager = new ManagerService(storage);
+        int early = manager.registerMembership(now, fromNow(10));
+        int late = manager.registerMembership(now, fromNow(30));
+        ExpiryIndex index = new ExpiryIndex(storage);
+        int middle = manager.registerMembership(now, fromNow(20));
+
+        assertEquals(List.of(early, middle, late), index.soonestExpiring(now, 5));
+        assertEquals(List.of(middle), index.expiringBetween(fromNow(15), fromNow(30)));
+
+        manager.extendMembership(early, Duration.ofSeconds(100));
+        assertEquals(List.of(middle, late), index.soonestExpiring(now, 2));
+        assertEquals(List.of(early), index.expiringBetween(fromNow(100), fromNow(200)));
+        assertEquals(0, index.countExpiringBetween(fromNow(0), fromNow(15)));
+        assertEquals(fromNow(110), index.getExpireDate(early));
+    }
+
+    @Test
+    void compactionTest() {
+        for (EventListFactory factory : List.of(EventListFactory.HEAP, new OffHeapEventColumns())) {
+            EventStorage storage = EventStorage.builder().snapshotInterval(4).eventLists(factory).build();
+            ManagerService manager = new ManagerService(storage);
+            EnterService enter = new EnterService(storage);
+            StatService stats = new StatService(storage);
+            int id = manager.registerMembership(now, fromNow(100_000));
+
+            for (int visit = 0; visit < 10; visit++) {
+                assertTrue(enter.enter(id, fromNow(visit * 100)));
+                assertTrue(enter.exit(id, fromNow(visit * 100 + 50)));
+            }
+            manager.extendMembership(id, Duration.ofSeconds(1000));
+            assertTrue(enter.enter(id, fromNow(5000)));
+            var averageBefore = stats.getAverageDuration();
+
+            CompactionService compaction = new CompactionService(storage, Duration.ofSeconds(1000));
+            assertEquals(20 - 1, compaction.compactAll(fromNow(2000)));
+            assertEquals(0, compaction.compactAll(fromNow(2000)));
+            int historySize = storage.transactionOn(id, List::size);
+            assertEquals(4, historySize);
+
+            var info = manager.getMembershipInfo(id);
+            assertEquals(11, info.getAttendanceCount());
+            assertTrue(info.isEntered());
+            assertEquals(fromNow(101_000), info.getExpireDate());
+            assertFalse(enter.enter(id, fromNow(5001)));
+            assertTrue(enter.exit(id, fromNow(5050)));
+            assertEquals(averageBefore, stats.getAverageDuration());
+
+            StatService rebuilt = new StatService(storage);
+            assertEquals(stats.getAverageDuration(), rebuilt.getAverageDuration());
+            assertEquals(11, manager.getMembershipInfo(id).getAttendanceCount());
+        }
+    }
+
+    @Test
+    void compactionReleasesHeapTest() {
+        EventStorage storage = new EventStorage();
+        ManagerService manager = new ManagerService(storage);
+        EnterService enter = new EnterService(storage);
+        StatService stats = new StatService(storage);
+        int id = manager.registerMembership(now, fromNow(100_000));
+
+        for (int visit = 0; visit < 1000; visit++) {
+            assertTrue(enter.enter(id, fromNow(visit * 100)));
+            assertTrue(enter.exit(id, fromNow(visit * 100 + 50)));
+        }
+        List<WeakReference<Event>> visits = storage.transactionOn(id, history -> history.subList(1, history.size())
+                .stream().map(WeakReference::new).collect(Collectors.toList()));
+        var averageBefore = stats.getAverageDuration();
+
+        CompactionService compaction = new CompactionService(storage, Duration.ofSeconds(1000));
+        assertEquals(2000 - 1, compaction.compactAll(fromNow(1_000_000)));
+        for (int attempt = 0; attempt < 10 && visits.stream().anyMatch(visit -> visit.get() != null); attempt++) {
+            System.gc();
+        }
+
+        assertEquals(0, visits.stream().filter(visit -> visit.get() != null).count());
+        assertEquals(2, (int) storage.transactionOn(id, List::size));
+        assertEquals(2001, storage.getSequence());
+        assertEquals(averageBefore, new StatService(storage).getAverageDuration());
+        assertEquals(1000, manager.getMembershipInfo(id).getAttendanceCount());
+    }
+
+    @Test
+    void compactionRecoveryTest(@TempDir Path directory) {
+        try (EventStorage storage = EventStorage.builder().journal(new EventJournal(directory)).build()) {
+            ManagerService manager = new ManagerService(storage);
+            EnterService enter = new EnterService(storage);
+            int id = manager.registerMembership(now, fromNow(100_000));
+
+            for (int visit = 0; visit < 10; visit++) {
+                assertTrue(enter.enter(id, fromNow(visit * 100)));
+                assertTrue(enter.exit(id, fromNow(visit * 100 + 50)));
+            }
+            assertTrue(enter.enter(id, fromNow(5000)));
+
+            assertEquals(20 - 1, new CompactionService(storage, Duration.ofSeconds(1000)).compactAll(fromNow(2000)));
+            assertTrue(enter.exit(id, fromNow(5050)));
+        }
+
+        try (EventStorage storage = EventStorage.builder().journal(new EventJournal(directory)).build()) {
+            var info = new ManagerService(storage).getMembershipInfo(0);
+            assertEquals(4, (int) storage.transactionOn(0, List::size));
+            assertEquals(11, info.getAttendanceCount());
+            assertFalse(info.isEntered());
+            assertEquals(23, storage.getSequence());
+            assertEquals(0, new CompactionService(storage, Duration.ofSeconds(1000)).compactAll(fromNow(2000)));
+            assertEquals(Duration.ofSeconds(50), new StatService(storage).getAverageDuration());
+        }
+    }
+
+    @Test
+    void eventArchiveTest() throws IOException {
+        EventStorage source = new EventStorage();
+        ManagerService manager = new ManagerService(source);
+        EnterService enter = new EnterService(source);
+        int first = manager.registerMemberships(6, now, fromNow(1000));
+        range(first, first + 6).forEach(id -> {
+            assertTrue(enter.enter(id, fromNow(10)));
+            assertTrue(enter.exit(id, fromNow(10 + id)));
+        });
+        assertTrue(enter.enter(2, fromNow(500)));
+        manager.extendMembership(3, Duration.ofSeconds(500));
+
+        ByteArrayOutputStream full = new ByteArrayOutputStream();
+        assertEquals(6 * 3 + 2, EventArchive.write(source, full, event -> true));
+        ByteArrayOutputStream window = new ByteArrayOutputStream();
+        assertEquals(6 * 3 + 1, EventArchive.write(source, window, EventArchive.between(now, fromNow(400))));
+        assertEquals(6 * 2, EventArchive.write(source, new ByteArrayOutputStream(),
+                EventArchive.between(fromNow(5), fromNow(400))));
+
+        EventStorage restored = new EventStorage();
+        assertEquals(6 * 3 + 2, EventArchive.read(new ByteArrayInputStream(full.toByteArray()), restored));
+        assertEquals(6, restored.getSize());
+        assertEquals(6 * 3 + 2, restored.getSequence());
+        StatService stats = new StatService(restored);
+        assertEquals(6, stats.getStatisticsOfDate(fromNow(10)).getAttendance());
+        assertEquals(Duration.ofSeconds(15), stats.getStatisticsOfDate(fromNow(10)).getTotalDuration());
+        assertEquals(1, stats.getOccupancy());
+        assertEquals(fromNow(1500), new ManagerService(restored).getMembershipInfo(3).getExpireDate());
+        assertEquals(6, new ManagerService(restored).registerMembership(now, fromNow(1000)));
+        assertThrows(IllegalArgumentException.class,
+                () -> EventArchive.read(new ByteArrayInputStream(full.toByteArray()), restored));
+
+        try (ShardedEventStorage sharded = new ShardedEventStorage(4)) {
+            assertEquals(6 * 3 + 1, EventArchive.read(new ByteArrayInputStream(window.toByteArray()), sharded));
+            assertEquals(6, sharded.getSize());
+            StatService shardedStats = new StatService(sharded);
+            assertEquals(6, shardedStats.getStatisticsOfDate(fromNow(10)).getAttendance());
+            assertEquals(0, shardedStats.getOccupancy());
+            assertEquals(1, new ManagerService(sharded).getMembershipInfo(2).getAttendanceCount());
+            assertEquals(6, new ManagerService(sharded).registerMembership(now, fromNow(1000)));
+        }
+
+        assertThrows(IOException.class,
+                () -> EventArchive.read(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9}), new EventStorage()));
+    }
+
+    @Test
+    void invalidMembershipIdTest() {
+        EventStorage plain = new EventStorage();
+        try (ShardedEventStorage sharded = new ShardedEventStorage(2)) {
+            for (EventStore storage : List.of(plain, sharded)) {
+                ManagerService manager = new ManagerService(storage);
+                EnterService enter = new EnterService(storage);
+                int first = manager.registerMemberships(4, now, fromNow(1000));
+
+                for (int id : new int[]{-1, -2, first + 4}) {
+                    assertThrows(IllegalArgumentException.class, () -> enter.enter(id, fromNow(1)));
+                    assertThrows(IllegalArgumentException.class, () -> manager.extendMembership(id, Duration.ofSeconds(1)));
+                    assertThrows(IllegalArgumentException.class, () -> storage.transactionOn(id, List::size));
+                    assertThrows(IllegalArgumentException.class,
+                            () -> enter.enterAll(List.of(new EnterService.Swipe(first, fromNow(1)), new EnterService.Swipe(id, fromNow(1)))));
+                }
+                range(first, first + 4).forEach(id -> {
+                    assertEquals(1, (int) storage.transactionOn(id, List::size));
+                    assertFalse(manager.getMembershipInfo(id).isEntered());
+                });
+                assertEquals(4, storage.getSequence());
+            }
+        }
+    }
+
+    @Test
+    void shardedStorageTest() {
+        try (ShardedEventStorage storage = new ShardedEventStorage(4)) {
+            ManagerService manager = new ManagerService(storage);
+            EnterService enter = new EnterService(storage);
+            StatService stats = new StatService(storage);
+            int single = manager.registerMembership(now, fromNow(1000));
+            int first = manager.registerMemberships(10, now, fromNow(1000));
+            int last = manager.registerMembership(now, fromNow(1000));
+            assertEquals(0, single);
+            assertEquals(1, first);
+            assertEquals(11, last);
+            assertEquals(12, storage.getSize());
+
+            range(0, 12).parallel().forEach(id -> {
+                assertTrue(enter.enter(id, fromNow(10)));
+                assertTrue(enter.exit(id, fromNow(10 + id)));
+            });
+            manager.extendMembership(5, Duration.ofSeconds(500));
+            storage.awaitDispatched();
+
+            assertEquals(fromNow(1500), manager.getMembershipInfo(5).getExpireDate());
+            assertEquals(1, manager.getMembershipInfo(7).getAttendanceCount());
+            assertEquals(12, stats.getStatisticsOfDate(fromNow(10)).getAttendance());
+            assertEquals(Duration.ofSeconds(66), stats.getStatisticsOfDate(fromNow(10)).getTotalDuration());
+            assertEquals(12 * 3 + 1, storage.getSequence());
+            assertEquals(3 * 3 + 1, storage.getPartition(1).getSequence());
+
+            StatService rebuilt = new StatService(storage);
+            assertEquals(12, rebuilt.getStatisticsOfDate(fromNow(10)).getAttendance());
+
+            Map<Long, Event> delivered = new ConcurrentHashMap<>();
+            StatSubscriber recorder = new StatSubscriber() {
+                @Override
+                public void process(Event event) {
+                }
+
+                @Override
+                public void process(long sequence, Event event) {
+                    assertNull(delivered.put(sequence, event));
+                }
+            };
+            assertThrows(IllegalArgumentException.class, () -> storage.subscribe(recorder, 1));
+            storage.subscribe(recorder, storage.getSequences(), ForkJoinPool.commonPool());
+            range(0, 12).forEach(id -> assertTrue(enter.enter(id, fromNow(100))));
+            storage.awaitDispatched();
+
+            assertEquals(12, delivered.size());
+            delivered.forEach((sequence, event) -> assertEquals(event.getMembershipId() % 4, sequence % 4));
+
+            var metrics = storage.getMetrics().snapshot();
+            assertEquals(24, metrics.getCounter("enter.accepted"));
+            assertEquals(range(0, 4).mapToLong(partition -> storage.getPartition(partition).getMetrics().snapshot()
+                            .getRecorder("storage.replayedEvents").getCount()).sum(),
+                    metrics.getRecorder("storage.replayedEvents").getCount());
+            assertTrue(metrics.getRecorder("storage.replayedEvents").getCount() > 0);
+
+            StatService replayed = new StatService(storage);
+            for (StatService service : List.of(stats, replayed)) {
+                assertEquals(12, service.getOccupancy());
+                assertEquals(12, service.getPeakOccupancy());
+                assertEquals(12, service.getStatistics(now, fromNow(24 * 60 * 60)).getAttendance());
+                assertEquals(Duration.ofSeconds(66), service.getStatistics(now, fromNow(24 * 60 * 60)).getTotalDuration());
+                assertEquals(Duration.ofMillis(5500), service.getAverageDuration());
+            }
+            List<StatService.HourlyOccupancy> live = stats.getHourlyOccupancy(now);
+            List<StatService.HourlyOccupancy> rebuiltHours = replayed.getHourlyOccupancy(now);
+            for (int hour = 0; hour < 24; hour++) {
+                assertEquals(live.get(hour).getVisitors(), rebuiltHours.get(hour).getVisitors());
+            }
+        }
+    }
+
+    @Test
+    void shardedPeakReplayTest() {
+        Date morning = Date.from(Instant.parse("2024-05-10T10:15:00Z"));
+        Date expire = Date.from(Instant.parse("2024-06-01T00:00:00Z"));
+
+        try (ShardedEventStorage storage = new ShardedEventStorage(2)) {
+            ManagerService manager = new ManagerService(storage);
+            EnterService enter = new EnterService(storage);
+            StatService live = new StatService(storage);
+            int a = manager.registerMembership(morning, expire);
+            int b = manager.registerMembership(morning, expire);
+            assertNotEquals(a % 2, b % 2);
+
+            List<Runnable> swipes = List.of(
+                    () -> assertTrue(enter.enter(a, new Date(morning.getTime()))),
+                    () -> assertTrue(enter.enter(b, new Date(morning.getTime() + 1000))),
+                    () -> assertTrue(enter.exit(a, new Date(morning.getTime() + 2000))),
+                    () -> assertTrue(enter.exit(b, new Date(morning.getTime() + 3000))),
+                    () -> assertTrue(enter.enter(a, new Date(morning.getTime() + 60_000))),
+                    () -> assertTrue(enter.exit(a, new Date(morning.getTime() + 61_000))),
+                    () -> assertTrue(enter.enter(b, new Date(morning.getTime() + 62_000))),
+                    () -> assertTrue(enter.exit(b, new Date(morning.getTime() + 63_000))));
+            for (Runnable swipe : swipes) {
+                swipe.run();
+                storage.awaitDispatched();
+            }
+
+            StatService rebuilt = new StatService(storage);
+            for (StatService stats : List.of(live, rebuilt)) {
+                assertEquals(2, stats.getPeakOccupancy());
+                assertEquals(0, stats.getOccupancy());
+                var hours = stats.getHourlyOccupancy(morning);
+                assertEquals(2, hours.get(10).getPeak());
+                assertEquals(4, hours.get(10).getVisitors());
+                assertEquals(0, hours.get(11).getPeak());
+            }
+        }
+    }
+
+    @Test
+    void occupancyTest() {
+        Date morning = Date.from(Instant.parse("2024-05-10T10:15:00Z"));
+        int first = managerService.registerMembership(morning, Date.from(Instant.parse("2024-06-01T00:00:00Z")));
+        int second = managerService.registerMembership(morning, Date.from(Instant.parse("2024-06-01T00:00:00Z")));
+
+        assertTrue(enterService.enter(first, morning));
+        assertTrue(enterService.enter(second, Date.from(Instant.parse("2024-05-10T10:30:00Z"))));
+        assertEquals(2, statService.getOccupancy());
+        assertTrue(enterService.exit(first, Date.from(Instant.parse("2024-05-10T12:10:00Z"))));
+
+        assertEquals(1, statService.getOccupancy());
+        assertEquals(2, statService.getPeakOccupancy());
+        var hours = statService.getHourlyOccupancy(morning);
+        assertEquals(24, hours.size());
+        assertEquals(Date.from(Instant.parse("2024-05-10T10:00:00Z")), hours.get(10).getFrom());
+        assertEquals(2, hours.get(10).getVisitors());
+        assertEquals(2, hours.get(10).getPeak());
+        assertEquals(1, hours.get(11).getVisitors());
+        assertEquals(1, hours.get(12).getVisitors());
+        assertEquals(0, hours.get(13).getVisitors());
+    }
+
+    @Test
+    void parallelReplayTest() {
+        EventStorage storage = new EventStorage();
+        ManagerService manager = new ManagerService(storage);
+        EnterService enter = new EnterService(storage);
+        int memberCount = 500;
+        int[] ids = range(0, memberCount).map(i -> manager.registerMembership(now, fromNow(30 * 24 * 60 * 60))).toArray();
+
+        for (int visit = 0; visit < EventStorage.PARALLEL_REPLAY_THRESHOLD / 2; visit++) {
+            int id = ids[visit % memberCount];
+            int enterSecond = visit * 60;
+            assertTrue(enter.enter(id, fromNow(enterSecond)));
+            assertTrue(enter.exit(id, fromNow(enterSecond + 30 + visit % 1000)));
+        }
+        range(0, 200).forEach(i -> assertTrue(enter.enter(ids[i], fromNow(1_900_000))));
+        range(0, 200).forEach(i -> assertTrue(enter.exit(ids[i], fromNow(1_900_060))));
+        range(0, 10).forEach(i -> assertTrue(enter.enter(ids[i], fromNow(2_000_000))));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        StatService sequential = new StatService(storage, ZoneId.of("UTC"), new ForkJoinPool(1));
+        StatService parallel = new StatService(storage, ZoneId.of("UTC"), pool);
+        pool.shutdown();
+
+        range(0, 10).forEach(i -> assertTrue(enter.exit(ids[i], fromNow(2_000_100))));
+
+        assertEquals(sequential.getAverageDuration(), parallel.getAverageDuration());
+        assertEquals(sequential.getAverageAttendance(), parallel.getAverageAttendance());
+        assertEquals(sequential.getPercentileDuration(90), parallel.getPercentileDuration(90));
+        for (int day = 0; day < 5; day++) {
+            Date date = fromNow(day * 24 * 60 * 60);
+            assertEquals(sequential.getStatisticsOfDate(date).getAttendance(), parallel.getStatisticsOfDate(date).getAttendance());
+            assertEquals(sequential.getStatisticsOfDate(date).getTotalDuration(), parallel.getStatisticsOfDate(date).getTotalDuration());
+        }
+        assertEquals(sequential.getStatistics(now, fromNow(2_100_000)).getAttendance(),
+                parallel.getStatistics(now, fromNow(2_100_000)).getAttendance());
+        assertEquals(200, sequential.getPeakOccupancy());
+        assertEquals(200, parallel.getPeakOccupancy());
+        assertEquals(sequential.getOccupancy(), parallel.getOccupancy());
+        for (int day = 0; day < 25; day++) {
+            List<StatService.HourlyOccupancy> expected = sequential.getHourlyOccupancy(fromNow(day * 24 * 60 * 60));
+            List<StatService.HourlyOccupancy> actual = parallel.getHourlyOccupancy(fromNow(day * 24 * 60 * 60));
+            for (int hour = 0; hour < 24; hour++) {
+                assertEquals(expected.get(hour).getVisitors(), actual.get(hour).getVisitors());
+                assertEquals(expected.get(hour).getPeak(), actual.get(hour).getPeak());
+            }
+        }
+    }
+
     @Test
     void truncateTest() {
         assertEquals(new Date(0), DateUtils.truncateToDays(new Date(1000)));
@@ -0,0 +1,94 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import services.EnterService;
+import services.ManagerService;
+import services.StatService;
+import storage.EventJournal;
+import storage.EventStorage;
+import storage.GroupCommitWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchEnterBenchmark {
+    @Param({"1000"})
+    int members;
+
+    @Param({"256"})
+    int batchSize;
+
+    @Param({"false", "true"})
+    boolean journaled;
+
+    private EventStorage storage;
+    private EnterService enterService;
+    private List<EnterService.Swipe> enters;
+    private List<EnterService.Swipe> exits;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        var builder = EventStorage.builder();
+
+        if (journaled) {
+            builder.journal(new GroupCommitWriter(new EventJournal(Files.createTempDirectory("batch-enter"))));
+        }
+
+        storage = builder.build();
+        ManagerService managerService = new ManagerService(storage);
+        enterService = new EnterService(storage);
+        new StatService(storage);
+        var now = System.currentTimeMillis();
+
+        for (int i = 0; i < members; i++) {
+            managerService.registerMembership(new Date(now), new Date(Long.MAX_VALUE));
+        }
+
+        enters = new ArrayList<>(batchSize);
+        exits = new ArrayList<>(batchSize);
+        var random = ThreadLocalRandom.current();
+
+        for (int i = 0; i < batchSize; i++) {
+            int id = random.nextInt(members);
+            enters.add(new EnterService.Swipe(id, new Date(now + i)));
+            exits.add(new EnterService.Swipe(id, new Date(now + batchSize + i)));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        storage.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(256)
+    public int loop() {
+        var accepted = 0;
+
+        for (var swipe : enters) {
+            accepted += enterService.enter(swipe.getMembershipId(), swipe.getDate()) ? 1 : 0;
+        }
+        for (var swipe : exits) {
+            accepted += enterService.exit(swipe.getMembershipId(), swipe.getDate()) ? 1 : 0;
+        }
+
+        return accepted;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(256)
+    public int batch() {
+        return enterService.enterAll(enters).length + enterService.exitAll(exits).length;
+    }
+}
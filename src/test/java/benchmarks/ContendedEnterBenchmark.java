@@ -0,0 +1,67 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import services.EnterService;
+import services.ManagerService;
+import storage.EventJournal;
+import storage.EventStorage;
+import storage.GroupCommitWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class ContendedEnterBenchmark {
+    @Param({"LOCKED", "OPTIMISTIC"})
+    EventStorage.ConcurrencyMode mode;
+
+    @Param({"4"})
+    int members;
+
+    @Param({"false", "true"})
+    boolean journaled;
+
+    private EventStorage storage;
+    private EnterService enterService;
+    private Date swipe;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        var builder = EventStorage.builder().mode(mode);
+
+        if (journaled) {
+            builder.journal(new GroupCommitWriter(new EventJournal(Files.createTempDirectory("contended-enter"))));
+        }
+
+        storage = builder.build();
+        ManagerService managerService = new ManagerService(storage);
+        enterService = new EnterService(storage);
+        swipe = new Date();
+
+        for (int i = 0; i < members; i++) {
+            managerService.registerMembership(swipe, new Date(Long.MAX_VALUE));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        storage.close();
+    }
+
+    @Benchmark
+    public boolean swipe() {
+        var random = ThreadLocalRandom.current();
+        int id = random.nextInt(members);
+
+        return random.nextBoolean() ? enterService.enter(id, swipe) : enterService.exit(id, swipe);
+    }
+}
@@ -0,0 +1,119 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import utils.ChunkedDynamicArray;
+import utils.DynamicArray;
+import utils.LockFreeDynamicArray;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DynamicArrayBenchmark {
+    @Param({"LOCK_FREE", "CHUNKED"})
+    String implementation;
+
+    @Param({"100000"})
+    int size;
+
+    private DynamicArray<Integer> array;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        array = implementation.equals("CHUNKED") ? new ChunkedDynamicArray<>() : new LockFreeDynamicArray<>();
+
+        for (int i = 0; i < size; i++) {
+            array.pushBack(i);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Integer get1() {
+        return get();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void put1() {
+        put();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int pushBack1() {
+        return pushBack();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public Integer get2() {
+        return get();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void put2() {
+        put();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public int pushBack2() {
+        return pushBack();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Integer get4() {
+        return get();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void put4() {
+        put();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int pushBack4() {
+        return pushBack();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Integer getMax() {
+        return get();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void putMax() {
+        put();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public int pushBackMax() {
+        return pushBack();
+    }
+
+    private Integer get() {
+        return array.get(ThreadLocalRandom.current().nextInt(size));
+    }
+
+    private void put() {
+        var index = ThreadLocalRandom.current().nextInt(size);
+        array.put(index, index);
+    }
+
+    private int pushBack() {
+        return array.pushBack(0);
+    }
+}
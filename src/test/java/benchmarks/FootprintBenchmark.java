@@ -0,0 +1,65 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import services.ManagerService;
+import storage.EventListFactory;
+import storage.EventStorage;
+import storage.OffHeapEventColumns;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-XX:+UseSerialGC")
+public class FootprintBenchmark {
+    @Param({"HEAP", "OFF_HEAP"})
+    String backend;
+
+    @Param({"1000"})
+    int members;
+
+    @Param({"500"})
+    int historyLength;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long retainedHeapBytes;
+        public long offHeapBytes;
+    }
+
+    @Benchmark
+    public EventStorage fill(Footprint footprint) {
+        var before = usedHeap();
+        var columns = backend.equals("OFF_HEAP") ? new OffHeapEventColumns() : null;
+        var storage = EventStorage.builder().eventLists(columns == null ? EventListFactory.HEAP : columns).build();
+        var manager = new ManagerService(storage);
+        var start = new Date();
+
+        for (int i = 0; i < members; i++) {
+            var id = manager.registerMembership(start, new Date(start.getTime() + TimeUnit.DAYS.toMillis(365)));
+
+            for (int j = 1; j < historyLength; j++) {
+                manager.extendMembership(id, Duration.ofMillis(j));
+            }
+        }
+
+        footprint.retainedHeapBytes = usedHeap() - before;
+        footprint.offHeapBytes = columns == null ? 0 : columns.offHeapBytes();
+        return storage;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
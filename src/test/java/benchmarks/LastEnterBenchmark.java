@@ -0,0 +1,76 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import utils.DynamicArray;
+import utils.IntLongDynamicArray;
+import utils.LockFreeDynamicArray;
+
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LastEnterBenchmark {
+    @Param({"100000"})
+    int members;
+
+    private DynamicArray<Date> boxed;
+    private IntLongDynamicArray primitive;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        boxed = new LockFreeDynamicArray<>();
+        primitive = new IntLongDynamicArray();
+
+        for (int i = 0; i < members; i++) {
+            boxed.pushBack(null);
+            primitive.put(i, IntLongDynamicArray.EMPTY);
+        }
+    }
+
+    @Benchmark
+    public long boxedEnterExit() {
+        int id = ThreadLocalRandom.current().nextInt(members);
+        boxed.put(id, new Date(id));
+        Date enter = boxed.get(id);
+        boxed.put(id, null);
+
+        return enter == null ? 0 : enter.getTime();
+    }
+
+    @Benchmark
+    public long primitiveEnterExit() {
+        int id = ThreadLocalRandom.current().nextInt(members);
+        primitive.put(id, id);
+
+        return primitive.getAndSet(id, IntLongDynamicArray.EMPTY);
+    }
+
+    @Benchmark
+    public long boxedGrowth() {
+        DynamicArray<Date> array = new LockFreeDynamicArray<>();
+
+        for (int i = 0; i < 1024; i++) {
+            array.pushBack(null);
+            array.put(i, new Date(i));
+        }
+
+        return array.getSize();
+    }
+
+    @Benchmark
+    public long primitiveGrowth() {
+        IntLongDynamicArray array = new IntLongDynamicArray();
+
+        for (int i = 0; i < 1024; i++) {
+            array.put(i, i);
+        }
+
+        return array.get(1023);
+    }
+}
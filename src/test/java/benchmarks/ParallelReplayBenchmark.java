@@ -0,0 +1,75 @@
+package benchmarks;
+
+import events.Event;
+import org.openjdk.jmh.annotations.*;
+import services.EnterService;
+import services.ManagerService;
+import services.StatService;
+import storage.EventStorage;
+
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParallelReplayBenchmark {
+    @Param({"1", "2", "4", "8"})
+    int parallelism;
+
+    @Param({"10000"})
+    int members;
+
+    @Param({"1000000"})
+    int visits;
+
+    private final List<Event> events = new ArrayList<>();
+    private EventStorage storage;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var storage = new EventStorage();
+        pool = new ForkJoinPool(parallelism);
+        var manager = new ManagerService(storage);
+        var enter = new EnterService(storage);
+        var start = System.currentTimeMillis();
+        var ids = new int[members];
+
+        for (int i = 0; i < members; i++) {
+            ids[i] = manager.registerMembership(new Date(start), new Date(start + TimeUnit.DAYS.toMillis(365)));
+        }
+
+        for (int visit = 0; visit < visits; visit++) {
+            var enterTime = start + TimeUnit.SECONDS.toMillis(visit);
+            enter.enter(ids[visit % members], new Date(enterTime));
+            enter.exit(ids[visit % members], new Date(enterTime + TimeUnit.MINUTES.toMillis(45)));
+        }
+
+        storage.forEachEvent(events::add);
+    }
+
+    // Every replay subscribes to a fresh store, so subscribers don't pile up across invocations.
+    @Setup(Level.Iteration)
+    public void importEvents() {
+        storage = new EventStorage();
+        storage.importEvents(events);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public StatService rebuildStatistics() {
+        return new StatService(storage, ZoneOffset.UTC, pool);
+    }
+}
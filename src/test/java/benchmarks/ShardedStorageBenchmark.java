@@ -0,0 +1,63 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import services.EnterService;
+import services.ManagerService;
+import services.StatService;
+import storage.EventStorage;
+import storage.EventStore;
+import storage.ShardedEventStorage;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class ShardedStorageBenchmark {
+    @Param({"0", "1", "2", "4", "8"})
+    int partitions;
+
+    @Param({"10000"})
+    int members;
+
+    private EventStore storage;
+    private ManagerService managerService;
+    private EnterService enterService;
+    private Date swipe;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        storage = partitions == 0 ? new EventStorage() : new ShardedEventStorage(partitions);
+        managerService = new ManagerService(storage);
+        enterService = new EnterService(storage);
+        new StatService(storage);
+        swipe = new Date();
+        managerService.registerMemberships(members, swipe, new Date(Long.MAX_VALUE / 2));
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        storage.close();
+    }
+
+    @Benchmark
+    public boolean mixedTraffic() {
+        var random = ThreadLocalRandom.current();
+        int id = random.nextInt(members);
+        int operation = random.nextInt(16);
+
+        if (operation == 0) {
+            managerService.extendMembership(id, Duration.ofDays(1));
+            return true;
+        }
+
+        return operation % 2 == 0 ? enterService.enter(id, swipe) : enterService.exit(id, swipe);
+    }
+}
@@ -0,0 +1,51 @@
+package benchmarks;
+
+import events.Event;
+import events.MemberEntered;
+import events.MemberLeft;
+import org.openjdk.jmh.annotations.*;
+import services.StatService;
+import storage.EventStorage;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatServiceBenchmark {
+    private static final int EVENTS = 1 << 12;
+
+    @Param({"10000"})
+    int members;
+
+    private StatService statService;
+    private Event[] events;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        statService = new StatService(new EventStorage());
+        events = new Event[EVENTS];
+        var random = ThreadLocalRandom.current();
+        var noon = System.currentTimeMillis() / TimeUnit.DAYS.toMillis(1) * TimeUnit.DAYS.toMillis(1)
+                + TimeUnit.HOURS.toMillis(12);
+
+        for (int i = 0; i < EVENTS; i += 2) {
+            var id = random.nextInt(members);
+            var enter = noon + random.nextInt((int) TimeUnit.HOURS.toMillis(4));
+            events[i] = new MemberEntered(id, enter);
+            events[i + 1] = new MemberLeft(id, enter + random.nextInt((int) TimeUnit.HOURS.toMillis(2)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void processHotDay() {
+        for (var event : events) {
+            statService.process(event);
+        }
+    }
+}
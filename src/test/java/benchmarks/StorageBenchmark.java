@@ -0,0 +1,56 @@
+package benchmarks;
+
+import events.MembershipExtended;
+import org.openjdk.jmh.annotations.*;
+import services.EnterService;
+import services.ManagerService;
+import storage.EventStorage;
+
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StorageBenchmark {
+    @Param({"1000"})
+    int members;
+
+    @Param({"16", "100000"})
+    int historyLength;
+
+    private EventStorage storage;
+    private EnterService enterService;
+    private int longHistory;
+    private Date swipe;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        storage = new EventStorage();
+        var managerService = new ManagerService(storage);
+        enterService = new EnterService(storage);
+        swipe = new Date();
+
+        managerService.registerMemberships(members, swipe, new Date(Long.MAX_VALUE));
+        longHistory = ThreadLocalRandom.current().nextInt(members);
+
+        for (int i = 0; i < historyLength / 2; i++) {
+            enterService.enter(longHistory, swipe);
+            enterService.exit(longHistory, swipe);
+        }
+    }
+
+    @Benchmark
+    public void saveEvent() {
+        storage.saveEvent(new MembershipExtended(ThreadLocalRandom.current().nextInt(members), 1000));
+    }
+
+    @Benchmark
+    public boolean enterExit() {
+        return enterService.enter(longHistory, swipe) & enterService.exit(longHistory, swipe);
+    }
+}